@@ -0,0 +1,58 @@
+package org.neointegrations.ftps.api;
+
+import org.mule.runtime.extension.api.annotation.param.Parameter;
+
+import java.io.Serializable;
+
+/**
+ * Describes one batch of files emitted by the batch listener. The attributes of every file travel with the file
+ * in the payload.
+ */
+public class FTPSBatchAttributes implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Parameter
+    private String path;
+
+    @Parameter
+    private int fileCount;
+
+    @Parameter
+    private long size;
+
+    public FTPSBatchAttributes(String path, int fileCount, long size) {
+        this.path = path;
+        this.fileCount = fileCount;
+        this.size = size;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    public int getFileCount() {
+        return fileCount;
+    }
+
+    public void setFileCount(int fileCount) {
+        this.fileCount = fileCount;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public void setSize(long size) {
+        this.size = size;
+    }
+
+    @Override
+    public String toString() {
+        return "FTPSBatchAttributes{path='" + path + "', fileCount=" + fileCount + ", size=" + size + '}';
+    }
+}
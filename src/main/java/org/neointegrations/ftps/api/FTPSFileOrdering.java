@@ -0,0 +1,23 @@
+package org.neointegrations.ftps.api;
+
+/**
+ * Order in which a listener picks the files of a poll when it can not take all of them.
+ */
+public enum FTPSFileOrdering {
+    /**
+     * As listed by the server
+     */
+    SERVER,
+    /**
+     * Least recently modified first
+     */
+    OLDEST_FIRST,
+    /**
+     * Smallest first
+     */
+    SMALLEST_FIRST,
+    /**
+     * By file name
+     */
+    NAME
+}
@@ -0,0 +1,105 @@
+package org.neointegrations.ftps.api;
+
+import org.mule.runtime.extension.api.annotation.param.Parameter;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * Outcome of one file of a bulk operation. A failed file does not fail the whole operation, it is reported here
+ * with the reason instead.
+ */
+public class FTPSFileStatus implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Parameter
+    private String path;
+
+    @Parameter
+    private String name;
+
+    @Parameter
+    private boolean success;
+
+    @Parameter
+    private String errorMessage;
+
+    @Parameter
+    private long size;
+
+    @Parameter
+    private LocalDateTime timestamp;
+
+    public FTPSFileStatus(String path, String name, boolean success, String errorMessage,
+                          long size, LocalDateTime timestamp) {
+        this.path = path;
+        this.name = name;
+        this.success = success;
+        this.errorMessage = errorMessage;
+        this.size = size;
+        this.timestamp = timestamp;
+    }
+
+    public static FTPSFileStatus success(String path, String name, long size, LocalDateTime timestamp) {
+        return new FTPSFileStatus(path, name, true, null, size, timestamp);
+    }
+
+    public static FTPSFileStatus failure(String path, String name, String errorMessage) {
+        return new FTPSFileStatus(path, name, false, errorMessage, -1L, null);
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    public void setSuccess(boolean success) {
+        this.success = success;
+    }
+
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    public void setErrorMessage(String errorMessage) {
+        this.errorMessage = errorMessage;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public void setSize(long size) {
+        this.size = size;
+    }
+
+    public LocalDateTime getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(LocalDateTime timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    @Override
+    public String toString() {
+        return "FTPSFileStatus{path='" + path + "', name='" + name + "', success=" + success +
+                ", errorMessage='" + errorMessage + "', size=" + size + ", timestamp=" + timestamp + '}';
+    }
+}
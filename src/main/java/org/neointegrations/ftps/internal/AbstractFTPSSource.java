@@ -0,0 +1,580 @@
+package org.neointegrations.ftps.internal;
+
+import com.google.common.hash.Hashing;
+import org.apache.commons.net.ftp.FTPFile;
+import org.mule.extension.file.common.api.matcher.NullFilePayloadPredicate;
+import org.mule.runtime.api.connection.ConnectionException;
+import org.mule.runtime.api.connection.ConnectionProvider;
+import org.mule.runtime.api.store.ObjectStore;
+import org.mule.runtime.api.store.ObjectStoreException;
+import org.mule.runtime.api.store.ObjectStoreManager;
+import org.mule.runtime.api.store.ObjectStoreSettings;
+import org.mule.runtime.extension.api.annotation.param.Config;
+import org.mule.runtime.extension.api.annotation.param.Connection;
+import org.mule.runtime.extension.api.annotation.param.Optional;
+import org.mule.runtime.extension.api.annotation.param.Parameter;
+import org.mule.runtime.extension.api.annotation.param.display.DisplayName;
+import org.mule.runtime.extension.api.annotation.param.display.Path;
+import org.mule.runtime.extension.api.annotation.param.display.Placement;
+import org.mule.runtime.extension.api.annotation.param.display.Summary;
+import org.mule.runtime.extension.api.runtime.operation.Result;
+import org.mule.runtime.extension.api.runtime.source.PollContext;
+import org.mule.runtime.extension.api.runtime.source.PollingSource;
+import org.neointegrations.ftps.api.FTPSFileAttributes;
+import org.neointegrations.ftps.api.FTPSFileMatcher;
+import org.neointegrations.ftps.api.FTPSFileOrdering;
+import org.neointegrations.ftps.internal.client.FTPFileIterator;
+import org.neointegrations.ftps.internal.source.AdaptivePollInterval;
+import org.neointegrations.ftps.internal.source.ClusterShard;
+import org.neointegrations.ftps.internal.source.FileStabilityTracker;
+import org.neointegrations.ftps.internal.source.InFlightRegistry;
+import org.neointegrations.ftps.internal.source.ListingSnapshot;
+import org.neointegrations.ftps.internal.source.PostActionQueue;
+import org.neointegrations.ftps.internal.source.Prefetcher;
+import org.neointegrations.ftps.internal.source.TopKSelector;
+import org.neointegrations.ftps.internal.stream.LazyInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Predicate;
+
+import static org.mule.runtime.api.meta.model.display.PathModel.Location.EXTERNAL;
+import static org.mule.runtime.api.meta.model.display.PathModel.Type.DIRECTORY;
+import static org.mule.runtime.core.api.util.ExceptionUtils.extractConnectionException;
+import static org.mule.runtime.core.api.util.IOUtils.closeQuietly;
+import static org.mule.runtime.extension.api.annotation.param.display.Placement.ADVANCED_TAB;
+
+/**
+ * Listing, filtering and post processing shared by the listeners. A poll lists the folder, drops the files which
+ * are not stable yet, were already dispatched, belong to another cluster node or are still in flight, and hands
+ * the rest to {@link #dispatch}, which decides how they become events.
+ */
+public abstract class AbstractFTPSSource<T, A> extends PollingSource<T, A> {
+
+    private static final Logger _logger = LoggerFactory.getLogger(AbstractFTPSSource.class);
+    private static final int POST_ACTION_BATCH_SIZE = 50;
+    private static final long POST_ACTION_RETRY_BACKOFF_MILLIS = 1000;
+    private static final long POST_ACTION_STOP_TIMEOUT_MILLIS = 30_000;
+    private static final int PREFETCH_IN_MEMORY_THRESHOLD = 256 * 1024;
+    private static final long IN_FLIGHT_EXPIRATION_INTERVAL_MILLIS = 60_000;
+
+    @Config
+    private FTPSConfiguration config;
+
+    @Connection
+    private ConnectionProvider<FTPSConnection> _connectionProvider;
+
+    @Parameter
+    @Optional
+    @DisplayName("File Matching Rules")
+    @Summary("Matcher to filter the listed files")
+    private FTPSFileMatcher predicateBuilder;
+
+    @Parameter
+    @Optional(defaultValue = "1")
+    @Summary("Minimum time (in seconds) a file's size must stay unchanged across polls before it is picked")
+    @Placement(tab = ADVANCED_TAB)
+    private long timeBetweenSizeCheckInSeconds;
+
+    @Parameter
+    @Optional(defaultValue = "true")
+    @Summary("Enable or disable incomplete file check")
+    @Placement(tab = ADVANCED_TAB)
+    private boolean sizeCheckEnabled;
+
+    @Parameter
+    @Optional(defaultValue = "2")
+    @Summary("Number of polls a file's size and timestamp must be seen unchanged before it is picked")
+    @Placement(tab = ADVANCED_TAB)
+    private int sizeCheckObservations;
+
+    @Parameter
+    @Optional(defaultValue = "0")
+    @Summary("Files last modified longer ago than this (in seconds) are picked straight away. 0 disables it")
+    @Placement(tab = ADVANCED_TAB)
+    private long sizeCheckMinAgeInSeconds;
+
+    @Parameter
+    @Path(type = DIRECTORY, location = EXTERNAL)
+    @Optional(defaultValue = "/home/share")
+    private String sourceFolder;
+
+    @Parameter
+    @Optional(defaultValue = "false")
+    private boolean createIntermediateFile;
+
+
+    @Parameter
+    @Optional(defaultValue = "false")
+    private boolean watermarkEnabled;
+
+    @Parameter
+    @Optional(defaultValue = "false")
+    @DisplayName("Only new or updated files")
+    @Summary("Remember the size and timestamp of every dispatched file in a persistent object store " +
+            "and only dispatch files which are new or have changed since")
+    @Placement(tab = ADVANCED_TAB)
+    private boolean snapshotEnabled;
+
+    @Parameter
+    @Optional(defaultValue = "true")
+    @Summary("Apply the post processing actions in the background, in batches over one connection, " +
+            "instead of logging in for every file on the flow's thread")
+    @Placement(tab = ADVANCED_TAB)
+    private boolean asyncPostActions;
+
+    @Parameter
+    @Optional(defaultValue = "1000")
+    @Summary("Maximum number of files waiting for their post processing actions. When it is full the actions " +
+            "are applied on the flow's thread")
+    @Placement(tab = ADVANCED_TAB)
+    private int postActionQueueSize;
+
+    @Parameter
+    @Optional(defaultValue = "3")
+    @Summary("Number of times a failed post processing action is tried before it is given up")
+    @Placement(tab = ADVANCED_TAB)
+    private int postActionMaxAttempts;
+
+    @Parameter
+    @Optional(defaultValue = "0")
+    @Summary("Number of files downloaded ahead of the one being dispatched, so a flow finds its file already " +
+            "local. 0 disables it")
+    @Placement(tab = ADVANCED_TAB)
+    private int prefetchDepth;
+
+    @Parameter
+    @Optional(defaultValue = "#[64 * 1024 * 1024]")
+    @Summary("Maximum number of bytes held by prefetched files which were not read yet. Bigger files are read on demand")
+    @Placement(tab = ADVANCED_TAB)
+    private long prefetchBudgetInBytes;
+
+    @Parameter
+    @Optional(defaultValue = "false")
+    @Summary("Split the files between all the cluster nodes running this listener instead of letting the primary " +
+            "node do all the work. Requires primaryNodeOnly to be false")
+    @Placement(tab = ADVANCED_TAB)
+    private boolean clusterSharding;
+
+    @Parameter
+    @Optional(defaultValue = "60")
+    @Summary("A cluster node which did not poll for this long (in seconds) is dropped and its files are taken over " +
+            "by the others. Must be longer than the polling interval")
+    @Placement(tab = ADVANCED_TAB)
+    private long clusterNodeTimeoutInSeconds;
+
+    @Parameter
+    @Optional(defaultValue = "false")
+    @Summary("Share the files being processed with the other nodes polling the same folder, so none of them picks " +
+            "a file which is still being processed elsewhere. Always on with clusterSharding")
+    @Placement(tab = ADVANCED_TAB)
+    private boolean sharedInFlightRegistry;
+
+    @Parameter
+    @Optional(defaultValue = "3600")
+    @Summary("A shared in-flight entry which was not released for this long (in seconds), for example because " +
+            "its node died, expires so the file can be picked again")
+    @Placement(tab = ADVANCED_TAB)
+    private long inFlightTimeoutInSeconds;
+
+    @Parameter
+    @Optional(defaultValue = "false")
+    @Summary("Skip scheduled polls while the folder stays idle, listing it less and less often, and go back to " +
+            "every scheduled poll as soon as new files arrive")
+    @Placement(tab = ADVANCED_TAB)
+    private boolean adaptivePolling;
+
+    @Parameter
+    @Optional(defaultValue = "0")
+    @Summary("Shortest time (in seconds) between two listings with adaptive polling. The scheduling strategy's " +
+            "frequency is a lower bound too")
+    @Placement(tab = ADVANCED_TAB)
+    private long minPollIntervalInSeconds;
+
+    @Parameter
+    @Optional(defaultValue = "300")
+    @Summary("Longest time (in seconds) an idle folder goes without being listed with adaptive polling")
+    @Placement(tab = ADVANCED_TAB)
+    private long maxPollIntervalInSeconds;
+
+    @Parameter
+    @Optional(defaultValue = "0")
+    @Summary("Maximum number of files dispatched by one poll, the others wait for the next polls. 0 disables it")
+    @Placement(tab = ADVANCED_TAB)
+    private int maxFilesPerPoll;
+
+    @Parameter
+    @Optional(defaultValue = "0")
+    @Summary("Maximum number of bytes dispatched by one poll. The last file may go over it, so a bigger file is " +
+            "still picked on its own. 0 disables it")
+    @Placement(tab = ADVANCED_TAB)
+    private long maxBytesPerPoll;
+
+    @Parameter
+    @Optional(defaultValue = "SERVER")
+    @Summary("Order in which the files are picked and dispatched")
+    @Placement(tab = ADVANCED_TAB)
+    private FTPSFileOrdering ordering;
+
+    @Inject
+    private ObjectStoreManager objectStoreManager;
+
+    private Predicate<FTPSFileAttributes> matcher;
+
+    private FileStabilityTracker stabilityTracker;
+
+    private ListingSnapshot snapshot;
+    private int snapshotGeneration;
+
+    private PostActionQueue postActions;
+
+    private Prefetcher prefetcher;
+
+    private ClusterShard shard;
+
+    private InFlightRegistry inFlight;
+
+    private AdaptivePollInterval pollInterval;
+
+    private int dispatchedInPoll;
+
+
+    @Override
+    protected void doStart() {
+        if (inFlightTimeoutInSeconds <= 0) {
+            throw new IllegalArgumentException("inFlightTimeoutInSeconds must be greater than 0");
+        }
+        refreshMatcher();
+        stabilityTracker = new FileStabilityTracker(sizeCheckObservations,
+                timeBetweenSizeCheckInSeconds * 1000, sizeCheckMinAgeInSeconds * 1000);
+        if (prefetchDepth > 0) {
+            prefetcher = new Prefetcher(prefetchDepth, prefetchBudgetInBytes, PREFETCH_IN_MEMORY_THRESHOLD);
+        }
+        if (adaptivePolling) {
+            pollInterval = new AdaptivePollInterval(minPollIntervalInSeconds * 1000,
+                    Math.max(minPollIntervalInSeconds, maxPollIntervalInSeconds) * 1000);
+        }
+        if (asyncPostActions) {
+            postActions = new PostActionQueue(_connectionProvider, postActionQueueSize, POST_ACTION_BATCH_SIZE,
+                    postActionMaxAttempts, POST_ACTION_RETRY_BACKOFF_MILLIS);
+        }
+    }
+
+    @Override
+    public void poll(PollContext<T, A> pollContext) {
+        if (pollInterval != null && !pollInterval.isDue(System.currentTimeMillis())) {
+            if (_logger.isDebugEnabled()) _logger.debug("Skipping the poll of an idle folder");
+            // Still alive for the other cluster nodes, even if the folder is not listed
+            if (shard != null) shard.heartbeat(System.currentTimeMillis());
+            return;
+        }
+        _logger.info("*** poll");
+        refreshMatcher();
+        FTPSConnection connection = null;
+        if (!pollContext.isSourceStopping()) {
+            try {
+                connection  = _connectionProvider.connect();
+                if (!connection.isConnected()) {
+                    throw new ConnectionException("Connection is not healthy. It will be retried");
+                }
+                if (clusterSharding) shard(connection).heartbeat(System.currentTimeMillis());
+                inFlight(connection);
+                if (snapshotEnabled) {
+                    snapshot(connection).beginPoll();
+                    if (shard != null && shard.generation() != snapshotGeneration) {
+                        // The memory copy only knows what this node dispatched, the files it owns from now on may
+                        // have been dispatched by another node
+                        snapshot.reload();
+                        snapshotGeneration = shard.generation();
+                    }
+                }
+                if (sizeCheckEnabled) stabilityTracker.beginPoll();
+                final long now = System.currentTimeMillis();
+                final TopKSelector<Candidate> selector = new TopKSelector<>(orderOf(ordering), maxFilesPerPoll,
+                        maxBytesPerPoll, candidate -> candidate.attributes.getSize());
+                dispatchedInPoll = 0;
+                long sequence = 0;
+                // The listing is parsed while it is received, only the files picked by the selector are held.
+                // The incomplete file check is done across polls by the stability tracker, so one listing is enough.
+                try (FTPFileIterator it = connection.ftpsClient().iterateFiles(sourceFolder)) {
+                    while (it.hasNext()) {
+                        final FTPFile file = it.next();
+                        if (file == null || file.isDirectory() ||
+                                (file.getName() != null && file.getName().startsWith("__"))) {
+                            continue;
+                        }
+                        final FTPSFileAttributes attrs = new FTPSFileAttributes(file.getSize(), file.isFile(),
+                                file.isDirectory(), file.isSymbolicLink(), sourceFolder,
+                                file.getName(), file.getTimestamp().getTime(), file);
+                        if (!matcher.test(attrs)) {
+                            continue;
+                        }
+                        // Still listed, so its entry survives the compaction even when it is skipped below
+                        if (snapshotEnabled) snapshot.seen(pathOf(attrs));
+                        if (postActions != null && postActions.isPending(pathOf(attrs))) {
+                            // Already processed, it is only waiting to be deleted or moved away
+                            continue;
+                        }
+                        if (shard != null && !shard.owns(pathOf(attrs))) {
+                            // Another cluster node dispatches it
+                            continue;
+                        }
+                        if (snapshotEnabled && !snapshot.isNewOrUpdated(pathOf(attrs), attrs.getSize(), modifiedMillis(attrs))) {
+                            continue;
+                        }
+                        if (sizeCheckEnabled && !stabilityTracker.isStable(pathOf(attrs), attrs.getSize(),
+                                modifiedMillis(attrs), now)) {
+                            continue;
+                        }
+                        if (inFlight.isInFlight(inFlightKeyOf(attrs))) {
+                            // Still being processed since an earlier poll
+                            continue;
+                        }
+                        selector.offer(new Candidate(attrs, sequence++));
+                    }
+                }
+
+                final List<Result<LazyInputStream, FTPSFileAttributes>> ready = new ArrayList<>(selector.size());
+                for (Candidate candidate : selector.take()) {
+                    final FTPSFileAttributes attrs = candidate.attributes;
+                    if (!inFlight.claim(inFlightKeyOf(attrs))) {
+                        // Claimed by another node meanwhile
+                        continue;
+                    }
+                    ready.add(Result.<LazyInputStream, FTPSFileAttributes>builder()
+                            .output(new LazyInputStream(sourceFolder, attrs.getName(), false,
+                                    connection.getProvider(), createIntermediateFile, attrs.getTimestamp())
+                                    .withExpectedSize(attrs.getSize()))
+                            .attributes(attrs)
+                            .build());
+                }
+                final boolean complete = dispatch(pollContext, ready);
+                if (sizeCheckEnabled) stabilityTracker.endPoll();
+                if (snapshotEnabled && complete) snapshot.compact();
+                if (pollInterval != null) {
+                    // Files already processed or still in flight are listed on every poll, only files which
+                    // appeared or changed since the last poll, or were dispatched, keep the folder active
+                    final boolean active = dispatchedInPoll > 0 || (sizeCheckEnabled && stabilityTracker.changed() > 0);
+                    pollInterval.polled(active, System.currentTimeMillis());
+                    if (_logger.isDebugEnabled()) _logger.debug("Next poll in {}ms", pollInterval.intervalMillis());
+                }
+            } catch (Exception e) {
+                _logger.error("Found exception trying to poll directory '{}'. Will try again on the next poll. Error message: {}",
+                        sourceFolder, e.getMessage(), e);
+                extractConnectionException(e).ifPresent(pollContext::onConnectionException);
+            } finally {
+                try{
+                    connection.close();
+                } catch(Exception ignored) {}
+            }
+
+        }
+    }
+
+    /**
+     * Turns the files which are ready into events. Every file is claimed in flight; a file which is not handed to a
+     * flow must be {@link #discard discarded}.
+     *
+     * @return false when the source stopped before every file was dispatched
+     */
+    protected abstract boolean dispatch(PollContext<T, A> pollContext,
+                                        List<Result<LazyInputStream, FTPSFileAttributes>> ready);
+
+    @Override
+    protected void doStop() {
+        if (prefetcher != null) {
+            prefetcher.stop();
+            prefetcher = null;
+        }
+        if (postActions != null) {
+            postActions.stop(POST_ACTION_STOP_TIMEOUT_MILLIS);
+            postActions = null;
+        }
+        // The in-flight claims are kept: the flows still running release theirs through the callbacks, and the
+        // shared entries of a node which goes away expire on their own. Releasing them here would let another
+        // node pick files which are still being processed.
+        if (shard != null) {
+            shard.leave();
+            shard = null;
+        }
+        if (stabilityTracker != null) stabilityTracker.clear();
+        snapshot = null;
+        snapshotGeneration = 0;
+        pollInterval = null;
+    }
+
+    protected boolean isWatermarkEnabled() {
+        return watermarkEnabled;
+    }
+
+    /**
+     * Starts downloading the file in the background when prefetching is enabled.
+     */
+    protected void prefetch(Result<LazyInputStream, FTPSFileAttributes> file) {
+        final Prefetcher current = prefetcher;
+        if (current != null) file.getAttributes().ifPresent(attrs -> current.prefetch(file.getOutput(), attrs.getSize()));
+    }
+
+    /**
+     * @return the number of files to download ahead, 0 when prefetching is disabled
+     */
+    protected int prefetchDepth() {
+        final Prefetcher current = prefetcher;
+        return current != null ? current.depth() : 0;
+    }
+
+    /**
+     * Records a file handed to a flow, so an unchanged file is not dispatched again.
+     */
+    protected void dispatched(FTPSFileAttributes attrs) {
+        dispatchedInPoll++;
+        if (snapshot != null) snapshot.record(pathOf(attrs), attrs.getSize(), modifiedMillis(attrs));
+    }
+
+    /**
+     * Forgets a file whose flow failed, so it is picked again on the next poll.
+     */
+    protected void failed(FTPSFileAttributes attrs) {
+        if (snapshot != null) snapshot.forget(pathOf(attrs));
+    }
+
+    /**
+     * Gives back a file which was claimed but not handed to a flow.
+     */
+    protected void discard(Result<? extends InputStream, FTPSFileAttributes> file) {
+        closeQuietly(file.getOutput());
+        file.getAttributes().ifPresent(this::release);
+    }
+
+    protected void release(FTPSFileAttributes attrs) {
+        release(inFlightKeyOf(attrs));
+    }
+
+    protected void release(String inFlightKey) {
+        final InFlightRegistry registry = inFlight;
+        if (registry != null) registry.release(inFlightKey);
+    }
+
+    protected void applyPostActions(PostActionGroup postAction, FTPSFileAttributes attrs) {
+        final String path = pathOf(attrs);
+        final List<PostActionQueue.Step> steps = new ArrayList<>(3);
+
+        _logger.info("*** postAction.isAutoDelete(): {}", postAction.isAutoDelete());
+        if (postAction.isAutoDelete()) {
+            steps.add(PostActionQueue.Step.delete(path));
+        }
+
+        _logger.info("*** postAction.getRenameTo(): {}", postAction.getRenameTo());
+        if (postAction.getRenameTo() != null) {
+            steps.add(PostActionQueue.Step.rename(path, attrs.getPath() + File.separator + postAction.getRenameTo()));
+        }
+
+        if (postAction.getMoveToDirectory() != null) {
+            steps.add(PostActionQueue.Step.rename(path,
+                    postAction.getMoveToDirectory() + File.separator + attrs.getName()));
+        }
+
+        final PostActionQueue queue = postActions;
+        if (queue != null) queue.submit(path, steps);
+        else if (!steps.isEmpty()) PostActionQueue.applyNow(_connectionProvider, path, steps);
+    }
+
+    protected static String pathOf(FTPSFileAttributes attrs) {
+        return attrs.getPath() + File.separator + attrs.getName();
+    }
+
+    protected static String inFlightKeyOf(FTPSFileAttributes attrs) {
+        return InFlightRegistry.keyOf(pathOf(attrs), attrs.getSize(), modifiedMillis(attrs));
+    }
+
+    private ListingSnapshot snapshot(FTPSConnection connection) throws ObjectStoreException {
+        if (snapshot == null) {
+            // One store per server account and folder, so listeners on other folders or servers don't interfere
+            snapshot = new ListingSnapshot(objectStoreManager.getOrCreateObjectStore(
+                    storeName("ftps-listener-snapshot-", connection),
+                    ObjectStoreSettings.builder().persistent(true).build()));
+        }
+        return snapshot;
+    }
+
+    private ClusterShard shard(FTPSConnection connection) throws ObjectStoreException {
+        if (shard == null) {
+            // Shared by the nodes polling the same server account and folder
+            shard = new ClusterShard(objectStoreManager.getOrCreateObjectStore(
+                    storeName("ftps-listener-members-", connection),
+                    ObjectStoreSettings.builder().persistent(true).build()),
+                    UUID.randomUUID().toString(), clusterNodeTimeoutInSeconds * 1000);
+        }
+        return shard;
+    }
+
+    private InFlightRegistry inFlight(FTPSConnection connection) throws ObjectStoreException {
+        if (inFlight == null) {
+            ObjectStore<Long> shared = null;
+            if (sharedInFlightRegistry || clusterSharding) {
+                final long ttl = inFlightTimeoutInSeconds * 1000;
+                shared = objectStoreManager.getOrCreateObjectStore(storeName("ftps-listener-in-flight-", connection),
+                        ObjectStoreSettings.builder()
+                                .persistent(true)
+                                .entryTtl(ttl)
+                                .expirationInterval(Math.min(ttl, IN_FLIGHT_EXPIRATION_INTERVAL_MILLIS))
+                                .build());
+            }
+            inFlight = new InFlightRegistry(shared);
+        }
+        return inFlight;
+    }
+
+    private String storeName(String prefix, FTPSConnection connection) {
+        return prefix + Hashing.sha256()
+                .hashString(connection.getProvider().serverKey() + "|" + sourceFolder, StandardCharsets.UTF_8);
+    }
+
+    private static Comparator<Candidate> orderOf(FTPSFileOrdering ordering) {
+        final Comparator<Candidate> listed = Comparator.comparingLong(candidate -> candidate.sequence);
+        if (ordering == null) return listed;
+        switch (ordering) {
+            case OLDEST_FIRST:
+                return Comparator.<Candidate>comparingLong(candidate -> modifiedMillis(candidate.attributes))
+                        .thenComparing(listed);
+            case SMALLEST_FIRST:
+                return Comparator.<Candidate>comparingLong(candidate -> candidate.attributes.getSize())
+                        .thenComparing(listed);
+            case NAME:
+                return Comparator.<Candidate, String>comparing(candidate -> candidate.attributes.getName())
+                        .thenComparing(listed);
+            default:
+                return listed;
+        }
+    }
+
+    private static long modifiedMillis(FTPSFileAttributes attrs) {
+        return attrs.getFile() != null && attrs.getFile().getTimestamp() != null ?
+                attrs.getFile().getTimestamp().getTimeInMillis() : 0L;
+    }
+
+    private void refreshMatcher() {
+        matcher = predicateBuilder != null ? predicateBuilder.build() : new NullFilePayloadPredicate<>();
+    }
+
+    /**
+     * A listed file which passed the filters, with its position in the listing to keep the server order.
+     */
+    private static final class Candidate {
+        private final FTPSFileAttributes attributes;
+        private final long sequence;
+
+        private Candidate(final FTPSFileAttributes attributes, final long sequence) {
+            this.attributes = attributes;
+            this.sequence = sequence;
+        }
+    }
+}
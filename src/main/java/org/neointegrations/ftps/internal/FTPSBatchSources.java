@@ -0,0 +1,204 @@
+package org.neointegrations.ftps.internal;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.mule.runtime.api.connection.ConnectionException;
+import org.mule.runtime.api.exception.MuleRuntimeException;
+import org.mule.runtime.extension.api.annotation.Alias;
+import org.mule.runtime.extension.api.annotation.execution.OnError;
+import org.mule.runtime.extension.api.annotation.execution.OnSuccess;
+import org.mule.runtime.extension.api.annotation.execution.OnTerminate;
+import org.mule.runtime.extension.api.annotation.param.MediaType;
+import org.mule.runtime.extension.api.annotation.param.Optional;
+import org.mule.runtime.extension.api.annotation.param.Parameter;
+import org.mule.runtime.extension.api.annotation.param.ParameterGroup;
+import org.mule.runtime.extension.api.annotation.param.display.DisplayName;
+import org.mule.runtime.extension.api.annotation.param.display.Summary;
+import org.mule.runtime.extension.api.annotation.source.ClusterSupport;
+import org.mule.runtime.extension.api.annotation.source.SourceClusterSupport;
+import org.mule.runtime.extension.api.runtime.operation.Result;
+import org.mule.runtime.extension.api.runtime.source.PollContext;
+import org.mule.runtime.extension.api.runtime.source.SourceCallbackContext;
+import org.neointegrations.ftps.api.FTPSBatchAttributes;
+import org.neointegrations.ftps.api.FTPSFileAttributes;
+import org.neointegrations.ftps.internal.source.FileBatcher;
+import org.neointegrations.ftps.internal.stream.LazyInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static java.lang.String.format;
+import static org.mule.runtime.api.i18n.I18nMessageFactory.createStaticMessage;
+import static org.mule.runtime.core.api.util.IOUtils.closeQuietly;
+import static org.mule.runtime.extension.api.annotation.param.MediaType.ANY;
+import static org.mule.runtime.extension.api.runtime.source.PollContext.PollItemStatus.ACCEPTED;
+import static org.mule.runtime.extension.api.runtime.source.PollContext.PollItemStatus.SOURCE_STOPPING;
+
+/**
+ * Emits the new or updated files of a folder in batches, one event carrying the streams and attributes of up to
+ * {@code maxFilesPerBatch} files, so feeds of many small files do not pay the per event overhead for every file.
+ * The post processing actions are applied to every file of the batch once its flow completes.
+ */
+@MediaType(value = ANY, strict = false)
+@DisplayName("On New or Updated Files (batch)")
+@Summary("When new files are created / updated in the directory, grouped in batches")
+@Alias("ftps-batch-listener")
+@ClusterSupport(SourceClusterSupport.DEFAULT_PRIMARY_NODE_ONLY)
+public class FTPSBatchSources extends AbstractFTPSSource<List<Result<InputStream, FTPSFileAttributes>>, FTPSBatchAttributes> {
+
+    private static final Logger _logger = LoggerFactory.getLogger(FTPSBatchSources.class);
+    private static final String BATCH = "batch";
+
+    @Parameter
+    @Optional(defaultValue = "100")
+    @Summary("Maximum number of files in one batch")
+    private int maxFilesPerBatch;
+
+    @Parameter
+    @Optional(defaultValue = "#[64 * 1024 * 1024]")
+    @Summary("Maximum number of bytes in one batch. A bigger file is emitted in a batch of its own. 0 disables it")
+    private long maxBytesPerBatch;
+
+    @Parameter
+    @Optional(defaultValue = "0")
+    @Summary("How long (in milliseconds) files which do not fill a batch wait for more files on the next polls. " +
+            "0 emits them at the end of every poll")
+    private long maxBatchWaitInMillis;
+
+    private FileBatcher<Result<LazyInputStream, FTPSFileAttributes>> batcher;
+
+    @Override
+    protected void doStart() {
+        super.doStart();
+        batcher = new FileBatcher<>(maxFilesPerBatch, maxBytesPerBatch, maxBatchWaitInMillis);
+    }
+
+    @Override
+    protected boolean dispatch(PollContext<List<Result<InputStream, FTPSFileAttributes>>, FTPSBatchAttributes> pollContext,
+                               List<Result<LazyInputStream, FTPSFileAttributes>> ready) {
+        final long now = System.currentTimeMillis();
+        for (Result<LazyInputStream, FTPSFileAttributes> file : ready) {
+            final FTPSFileAttributes attributes = file.getAttributes().orElse(null);
+            if (attributes == null || !attributes.isRegularFile()) {
+                discard(file);
+                continue;
+            }
+            batcher.add(file, attributes.getSize(), now);
+        }
+
+        final List<List<Result<LazyInputStream, FTPSFileAttributes>>> batches = batcher.takeReady(now);
+        final List<Result<LazyInputStream, FTPSFileAttributes>> files = new ArrayList<>();
+        batches.forEach(files::addAll);
+        int prefetched = 0;
+        int dispatched = 0;
+        for (int idx = 0; idx < batches.size(); idx++) {
+            // Download the whole batch and the files of the next ones while the earlier batches are being processed
+            dispatched += batches.get(idx).size();
+            while (prefetched < files.size() && prefetched < dispatched + prefetchDepth()) {
+                prefetch(files.get(prefetched++));
+            }
+            if (pollContext.isSourceStopping() || !processBatch(pollContext, batches.get(idx))) {
+                for (int rest = idx + 1; rest < batches.size(); rest++) batches.get(rest).forEach(this::discard);
+                batcher.takeAll().forEach(this::discard);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @OnSuccess
+    public void onSuccess(@ParameterGroup(name = "Post processing action") PostActionGroup postAction,
+                          SourceCallbackContext ctx) {
+        if (_logger.isDebugEnabled()) _logger.debug("Batch processed");
+        for (FTPSFileAttributes attrs : batchOf(ctx)) {
+            release(attrs);
+            applyPostActions(postAction, attrs);
+        }
+    }
+
+    @OnError
+    public void onError(@ParameterGroup(name = "Post processing action") PostActionGroup postAction,
+                        SourceCallbackContext ctx) throws ConnectionException {
+        if (_logger.isDebugEnabled()) _logger.debug("Batch failed");
+        for (FTPSFileAttributes attrs : batchOf(ctx)) {
+            release(attrs);
+            // The files were not processed, so they have to be picked again on the next poll
+            failed(attrs);
+            if (postAction.isApplyPostActionWhenFailed()) applyPostActions(postAction, attrs);
+        }
+    }
+
+    @OnTerminate
+    public void onTerminate(SourceCallbackContext ctx) {
+        // Already released by onSuccess or onError, unless the flow ended without calling them
+        batchOf(ctx).forEach(this::release);
+    }
+
+    @Override
+    public void onRejectedItem(Result<List<Result<InputStream, FTPSFileAttributes>>, FTPSBatchAttributes> result,
+                               SourceCallbackContext callbackContext) {
+        for (Result<InputStream, FTPSFileAttributes> file : result.getOutput()) closeQuietly(file.getOutput());
+        batchOf(callbackContext).forEach(this::release);
+    }
+
+    @Override
+    protected void doStop() {
+        if (batcher != null) batcher.takeAll().forEach(this::discard);
+        super.doStop();
+    }
+
+    private boolean processBatch(PollContext<List<Result<InputStream, FTPSFileAttributes>>, FTPSBatchAttributes> pollContext,
+                                 List<Result<LazyInputStream, FTPSFileAttributes>> batch) {
+        final List<Result<InputStream, FTPSFileAttributes>> files = new ArrayList<>(batch.size());
+        final ArrayList<FTPSFileAttributes> attributes = new ArrayList<>(batch.size());
+        final Hasher id = Hashing.sha256().newHasher();
+        long size = 0;
+        LocalDateTime newest = null;
+        for (Result<LazyInputStream, FTPSFileAttributes> file : batch) {
+            final FTPSFileAttributes attrs = file.getAttributes().get();
+            files.add((Result<InputStream, FTPSFileAttributes>) (Result<? extends InputStream, FTPSFileAttributes>) file);
+            attributes.add(attrs);
+            id.putString(inFlightKeyOf(attrs), StandardCharsets.UTF_8);
+            size += attrs.getSize();
+            if (newest == null || attrs.getTimestamp().isAfter(newest)) newest = attrs.getTimestamp();
+        }
+        final FTPSBatchAttributes batchAttributes = new FTPSBatchAttributes(attributes.get(0).getPath(),
+                files.size(), size);
+        final LocalDateTime watermark = newest;
+
+        PollContext.PollItemStatus status = pollContext.accept(item -> {
+            try {
+                item.getSourceCallbackContext().addVariable(BATCH, attributes);
+                item.setResult(Result.<List<Result<InputStream, FTPSFileAttributes>>, FTPSBatchAttributes>builder()
+                        .output(files)
+                        .attributes(batchAttributes)
+                        .build())
+                        .setId(id.hash().toString());
+
+                if (isWatermarkEnabled()) {
+                    item.setWatermark(watermark);
+                }
+            } catch (Exception t) {
+                throw new MuleRuntimeException(createStaticMessage(format("Found a batch of %d files in '%s' but found " +
+                        "exception trying to dispatch it for processing.", files.size(), batchAttributes.getPath())), t);
+            }
+        });
+        if (status == ACCEPTED) {
+            attributes.forEach(this::dispatched);
+        } else {
+            // Not dispatched, so no callback will release them
+            batch.forEach(this::discard);
+        }
+        return status != SOURCE_STOPPING;
+    }
+
+    private static List<FTPSFileAttributes> batchOf(SourceCallbackContext ctx) {
+        return ctx.<List<FTPSFileAttributes>>getVariable(BATCH).orElse(Collections.emptyList());
+    }
+}
@@ -25,7 +25,7 @@ import java.security.cert.X509Certificate;
  */
 @Operations(FTPSOperations.class)
 @ConnectionProviders(FTPSConnectionProvider.class)
-@Sources(FTPSSources.class)
+@Sources({FTPSSources.class, FTPSBatchSources.class})
 public class FTPSConfiguration {
     public FTPSConfiguration() throws ConnectionException {
     }
@@ -5,23 +5,33 @@ import org.mule.runtime.api.connection.CachedConnectionProvider;
 import org.mule.runtime.api.connection.ConnectionProvider;
 import org.mule.runtime.api.connection.ConnectionException;
 import org.mule.runtime.api.connection.ConnectionValidationResult;
+import org.mule.runtime.api.lifecycle.Disposable;
 import org.mule.runtime.extension.api.annotation.param.Optional;
 import org.mule.runtime.extension.api.annotation.param.Parameter;
 import org.mule.runtime.extension.api.annotation.param.display.*;
 import org.neointegrations.ftps.api.TrustStoreType;
+import org.neointegrations.ftps.internal.client.DirectoryCache;
 import org.neointegrations.ftps.internal.client.FTPClientProxyFactory;
+import org.neointegrations.ftps.internal.client.FTPSClientProxy;
+import org.neointegrations.ftps.internal.client.FTPSClientProxyPool;
+import org.neointegrations.ftps.internal.client.SocketOptions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.security.KeyStore;
+import java.util.concurrent.locks.ReentrantLock;
 
 import static org.mule.runtime.api.meta.model.display.PathModel.Location.EXTERNAL;
 import static org.mule.runtime.api.meta.model.display.PathModel.Type.DIRECTORY;
 
 
-public class FTPSConnectionProvider implements ConnectionProvider<FTPSConnection> {
+public class FTPSConnectionProvider implements ConnectionProvider<FTPSConnection>, Disposable {
     private static final Logger _logger = LoggerFactory.getLogger(FTPSConnectionProvider.class);
+    private static final int DIRECTORY_CACHE_SIZE = 10_000;
+    private final ReentrantLock _lock = new ReentrantLock();
+    private volatile FTPSClientProxyPool _pool = null;
+    private volatile FTPClientProxyFactory.Builder _builder = null;
 
     @Parameter
     @Placement(tab = "General", order = 3)
@@ -76,6 +86,58 @@ public class FTPSConnectionProvider implements ConnectionProvider<FTPSConnection
     @Parameter
     private String serverTimeZone;
 
+    @Optional(defaultValue = "true")
+    @Placement(tab = "Advanced", order = 7)
+    @DisplayName("Use MLSD/MLST when supported")
+    @Summary("Use the machine readable listing commands when the server advertises them, instead of parsing LIST output")
+    @Parameter
+    private boolean machineListing;
+
+    @Optional(defaultValue = "3")
+    @Placement(tab = "Advanced", order = 8)
+    @DisplayName("Download resume attempts")
+    @Summary("How many times in total a broken download is resumed from the last received byte (REST) before it fails. 0 disables resuming")
+    @Parameter
+    private int resumeAttempts;
+
+    @Optional(defaultValue = "1000")
+    @Placement(tab = "Advanced", order = 9)
+    @DisplayName("Download resume backoff (in milliseconds)")
+    @Summary("Wait before the first resume attempt, doubled on every further attempt")
+    @Parameter
+    private long resumeBackoffMillis;
+
+    @Optional(defaultValue = "#[60 * 1000]")
+    @Placement(tab = "Advanced", order = 10)
+    @DisplayName("Known folders cache TTL (in milliseconds)")
+    @Summary("How long a folder which was found or created is trusted to exist, so writing into it again does not " +
+            "walk its path with CWD/MKD. 0 disables the cache")
+    @Parameter
+    private long directoryCacheTtlMillis;
+
+    @Optional(defaultValue = "false")
+    @Placement(tab = "Advanced", order = 11)
+    @DisplayName("Compressed transfers (MODE Z)")
+    @Summary("Deflate the data connections when the server advertises MODE Z in its FEAT reply. Stream mode is " +
+            "used otherwise, and for transfers restarted at an offset")
+    @Parameter
+    private boolean compressedTransfer;
+
+    @Optional(defaultValue = "false")
+    @Placement(tab = "Advanced", order = 12)
+    @DisplayName("Clear data channel (PROT C)")
+    @Summary("Send the file contents and listings without TLS, only the login and the commands are encrypted. " +
+            "Only meant for trusted networks")
+    @Parameter
+    private boolean clearDataChannel;
+
+    @Optional(defaultValue = "false")
+    @Placement(tab = "Advanced", order = 13)
+    @DisplayName("Clear command channel after login (CCC)")
+    @Summary("Drop TLS from the control connection once the login is done. Only meant for trusted networks")
+    @Parameter
+    private boolean clearCommandChannel;
+
     @Optional(defaultValue = "true")
     @Placement(tab = "SSL Context", order = 1)
     @DisplayName("TLSv1.2 Only")
@@ -143,6 +205,113 @@ public class FTPSConnectionProvider implements ConnectionProvider<FTPSConnection
     @Parameter
     private TrustStoreType keyStoreType;
 
+    @Optional(defaultValue = "true")
+    @Placement(tab = "Pooling", order = 1)
+    @DisplayName("Connection pooling")
+    @Summary("Keep logged-in connections open and reuse them instead of doing a new TLS handshake and login every time")
+    @Parameter
+    private boolean poolingEnabled;
+
+    @Optional(defaultValue = "8")
+    @Placement(tab = "Pooling", order = 2)
+    @DisplayName("Max active connections")
+    @Parameter
+    private int maxActive;
+
+    @Optional(defaultValue = "8")
+    @Placement(tab = "Pooling", order = 3)
+    @DisplayName("Max idle connections")
+    @Parameter
+    private int maxIdle;
+
+    @Optional(defaultValue = "0")
+    @Placement(tab = "Pooling", order = 4)
+    @DisplayName("Min idle connections")
+    @Parameter
+    private int minIdle;
+
+    @Optional(defaultValue = "#[60 * 1000]")
+    @Placement(tab = "Pooling", order = 5)
+    @DisplayName("Max wait (in milliseconds)")
+    @Summary("How long to wait for a free connection when all of them are in use. A negative value waits forever")
+    @Parameter
+    private long maxWait;
+
+    @Optional(defaultValue = "#[5 * 60 * 1000]")
+    @Placement(tab = "Pooling", order = 6)
+    @DisplayName("Min idle time before eviction (in milliseconds)")
+    @Parameter
+    private long minEvictionMillis;
+
+    @Optional(defaultValue = "#[30 * 1000]")
+    @Placement(tab = "Pooling", order = 7)
+    @DisplayName("Eviction check interval (in milliseconds)")
+    @Parameter
+    private long evictionCheckIntervalMillis;
+
+    @Optional(defaultValue = "true")
+    @Placement(tab = "Pooling", order = 8)
+    @DisplayName("Validate on borrow")
+    @Parameter
+    private boolean testOnBorrow;
+
+    @Optional(defaultValue = "0")
+    @Placement(tab = "Socket", order = 1)
+    @DisplayName("Data socket send buffer (in bytes)")
+    @Summary("0 leaves the operating system default, or the auto tuned size")
+    @Parameter
+    private int socketSendBufferSize;
+
+    @Optional(defaultValue = "0")
+    @Placement(tab = "Socket", order = 2)
+    @DisplayName("Data socket receive buffer (in bytes)")
+    @Summary("0 leaves the operating system default, or the auto tuned size")
+    @Parameter
+    private int socketReceiveBufferSize;
+
+    @Optional(defaultValue = "true")
+    @Placement(tab = "Socket", order = 3)
+    @DisplayName("TCP_NODELAY on the control connection")
+    @Summary("Send commands straight away instead of waiting to coalesce them (Nagle's algorithm)")
+    @Parameter
+    private boolean tcpNoDelay;
+
+    @Optional(defaultValue = "false")
+    @Placement(tab = "Socket", order = 4)
+    @DisplayName("TCP keep-alive on the control connection")
+    @Parameter
+    private boolean tcpKeepAlive;
+
+    @Optional(defaultValue = "0")
+    @Placement(tab = "Socket", order = 5)
+    @DisplayName("Data connection timeout (in milliseconds)")
+    @Summary("How long a read on a data connection may block. 0 waits forever")
+    @Parameter
+    private int dataTimeout;
+
+    @Optional(defaultValue = "0")
+    @Placement(tab = "Socket", order = 6)
+    @DisplayName("Control keep-alive during transfers (in seconds)")
+    @Summary("Send a NOOP on the control connection this often during a long transfer, so firewalls do not drop " +
+            "it as idle. 0 disables it")
+    @Parameter
+    private long controlKeepAliveSeconds;
+
+    @Optional(defaultValue = "false")
+    @Placement(tab = "Socket", order = 7)
+    @DisplayName("Auto tune data socket buffers")
+    @Summary("Size the data socket buffers from the round trip time measured at login and the link bandwidth, " +
+            "unless they are set explicitly")
+    @Parameter
+    private boolean autoTuneSocketBuffers;
+
+    @Optional(defaultValue = "1000")
+    @Placement(tab = "Socket", order = 8)
+    @DisplayName("Link bandwidth (in Mbps)")
+    @Summary("Used by the auto tuning of the data socket buffers")
+    @Parameter
+    private long linkBandwidthMbps;
+
     public FTPSConnectionProvider() throws ConnectionException {
         super();
         // To resolve [NET-408 Issue](https://issues.apache.org/jira/browse/NET-408), below property is needed
@@ -152,9 +321,49 @@ public class FTPSConnectionProvider implements ConnectionProvider<FTPSConnection
 
     @Override
     public FTPSConnection connect() throws ConnectionException {
-        FTPClientProxyFactory.Builder builder = FTPClientProxyFactory.builder();
-        if(builder.canIReuse()) return new FTPSConnection(this, builder.build());
+        if (!poolingEnabled) return new FTPSConnection(this, builder().build());
+        return new FTPSConnection(this, pool().borrow());
+    }
+
+    /**
+     * Opens a connection only when it does not have to wait for the pool, for the extra workers of an operation
+     * which already holds a connection: waiting there could wait on the caller's own connection.
+     *
+     * @return null when the pool has no free connection
+     */
+    public FTPSConnection tryConnect() throws ConnectionException {
+        if (!poolingEnabled) return new FTPSConnection(this, builder().build());
+        final FTPSClientProxy proxy = pool().tryBorrow();
+        return proxy == null ? null : new FTPSConnection(this, proxy);
+    }
 
+    private FTPSClientProxyPool pool() {
+        if (_pool != null) return _pool;
+        _lock.lock();
+        try {
+            if (_pool == null) {
+                _pool = new FTPSClientProxyPool(builder(), maxActive, maxIdle, minIdle, maxWait,
+                        minEvictionMillis, evictionCheckIntervalMillis, testOnBorrow);
+            }
+            return _pool;
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    private FTPClientProxyFactory.Builder builder() {
+        if (_builder != null) return _builder;
+        _lock.lock();
+        try {
+            if (_builder == null) _builder = newBuilder();
+            return _builder;
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    private FTPClientProxyFactory.Builder newBuilder() {
+        FTPClientProxyFactory.Builder builder = FTPClientProxyFactory.builder();
         builder.withImplicit(false)
                 .withSessionReuse(sslSessionReuse)
                 .withpPintFtpCommand(debugFtpCommand)
@@ -167,6 +376,14 @@ public class FTPSConnectionProvider implements ConnectionProvider<FTPSConnection
                 .withTimeout(timeout)
                 .withSocketTimeout(socketTimeout)
                 .withBufferSizeInBytes(bufferSizeInBytes)
+                .withMachineListing(machineListing)
+                .withCompressedTransfer(compressedTransfer)
+                .withClearDataChannel(clearDataChannel)
+                .withClearCommandChannel(clearCommandChannel)
+                .withSocketOptions(new SocketOptions(socketSendBufferSize, socketReceiveBufferSize, tcpNoDelay,
+                        tcpKeepAlive, dataTimeout, controlKeepAliveSeconds, autoTuneSocketBuffers, linkBandwidthMbps))
+                .withDirectoryCache(directoryCacheTtlMillis > 0 ?
+                        new DirectoryCache(directoryCacheTtlMillis, DIRECTORY_CACHE_SIZE) : null)
                 .withTLSV12(tlsV12Only);
 
         if (!Strings.isNullOrEmpty(keyStorePath)) {
@@ -178,18 +395,34 @@ public class FTPSConnectionProvider implements ConnectionProvider<FTPSConnection
             if(trustStoreType == null) trustStoreType = TrustStoreType.valueOf(KeyStore.getDefaultType().toUpperCase());
             builder.withTrustStore(trustStorePath, trustStorePassword, trustStoreType.get());
         }
-
-        return new FTPSConnection(this, builder.build());
+        return builder;
     }
 
     @Override
     public void disconnect(FTPSConnection connection) {
         if (_logger.isDebugEnabled()) _logger.debug("Disconnecting...");
         if (connection == null || connection.ftpsClient() == null) return;
-        connection.ftpsClient().close();
+        if (_pool != null) _pool.release(connection.ftpsClient());
+        else connection.ftpsClient().close();
         if (_logger.isDebugEnabled()) _logger.debug("Disconnected ");
     }
 
+    /**
+     * Closes the connection instead of returning it to the pool.
+     */
+    public void invalidate(FTPSConnection connection) {
+        if (connection == null || connection.ftpsClient() == null) return;
+        if (_pool != null) _pool.invalidate(connection.ftpsClient());
+        else connection.ftpsClient().close();
+    }
+
+    @Override
+    public void dispose() {
+        if (_pool == null) return;
+        _pool.close();
+        _pool = null;
+    }
+
     @Override
     public ConnectionValidationResult validate(final FTPSConnection connection) {
         if (_logger.isDebugEnabled()) _logger.debug("Validating connection...");
@@ -201,6 +434,25 @@ public class FTPSConnectionProvider implements ConnectionProvider<FTPSConnection
         }
     }
 
+    public int getBufferSizeInBytes() {
+        return bufferSizeInBytes;
+    }
+
+    public int getResumeAttempts() {
+        return resumeAttempts;
+    }
+
+    public long getResumeBackoffMillis() {
+        return resumeBackoffMillis;
+    }
+
+    /**
+     * Identifies the server account this provider connects to, without any secret in it.
+     */
+    public String serverKey() {
+        return user + "@" + host + ":" + port;
+    }
+
     public void reconnect(final FTPSConnection connection) throws IOException, ConnectionException {
         if (_logger.isDebugEnabled()) _logger.debug("Connection re-starting...");
         connection.ftpsClient().reconnect();
@@ -15,9 +15,16 @@ import org.mule.runtime.extension.api.annotation.param.display.Path;
 import org.mule.runtime.extension.api.annotation.param.display.Placement;
 import org.mule.runtime.extension.api.annotation.param.display.Summary;
 import org.mule.runtime.extension.api.runtime.operation.Result;
+import org.mule.runtime.extension.api.runtime.streaming.PagingProvider;
 import org.neointegrations.ftps.api.FTPSFileAttributes;
 import org.neointegrations.ftps.api.FTPSFileMatcher;
+import org.neointegrations.ftps.api.FTPSFileStatus;
 import org.neointegrations.ftps.internal.client.FTPClientProxyFactory;
+import org.neointegrations.ftps.internal.client.ParallelTreeDelete;
+import org.neointegrations.ftps.internal.stream.BulkDownload;
+import org.neointegrations.ftps.internal.stream.BulkUpload;
+import org.neointegrations.ftps.internal.stream.FTPSFileWriter;
+import org.neointegrations.ftps.internal.stream.FTPSListPagingProvider;
 import org.neointegrations.ftps.internal.stream.LazyInputStream;
 import org.neointegrations.ftps.internal.util.FTPSUtil;
 import org.slf4j.Logger;
@@ -116,7 +123,7 @@ public class FTPSOperations {
                 // Filters ends
                 final LazyInputStream lazyStream = new LazyInputStream(sourceFolder,
                         file.getName(), deleteTheFileAfterRead, connection.getProvider(),
-                        createIntermediateFile, attr.getTimestamp());
+                        createIntermediateFile, attr.getTimestamp()).withExpectedSize(file.getSize());
 
                 files.add(Result.<LazyInputStream, FTPSFileAttributes>builder()
                         .output(lazyStream)
@@ -134,6 +141,27 @@ public class FTPSOperations {
         }
     }
 
+    @Summary("List the files from a given directory page by page while the server is still sending the listing. " +
+            "Meant for very large folders, the incomplete file check is not applied")
+    @MediaType(value = "*/*", strict = false)
+    @DisplayName("List File (Streaming)")
+    public PagingProvider<FTPSConnection, Result<LazyInputStream, FTPSFileAttributes>> listStreaming(
+            @Config final FTPSConfiguration ftpsConfig,
+            @Optional @DisplayName("File Matching Rules")
+            @Summary("Matcher to filter the listed files") FTPSFileMatcher matcher,
+            @Optional(defaultValue = "false") boolean createIntermediateFile,
+            @Optional(defaultValue = "true")
+            @Placement(tab = ADVANCED_TAB) boolean deleteTheFileAfterRead,
+            @Optional(defaultValue = "500") @Summary("Maximum number of files in each page")
+            @Placement(tab = ADVANCED_TAB) int pageSize,
+            @Path(type = DIRECTORY, location = EXTERNAL)
+            @Optional(defaultValue = "/home/share") String sourceFolder) {
+
+        if (_logger.isDebugEnabled()) _logger.debug("Listing a folder page by page...");
+        return new FTPSListPagingProvider(sourceFolder, FTPSUtil.getPredicate(matcher),
+                createIntermediateFile, deleteTheFileAfterRead, pageSize);
+    }
+
     @Summary("Read a file from the FTPS server.")
     @MediaType(value = "*/*", strict = false)
     @DisplayName("Read File")
@@ -147,7 +175,16 @@ public class FTPSOperations {
                                                             @Optional(defaultValue = "true") @Summary("Enable or disable incomplete file check")
                                                             @Placement(tab = ADVANCED_TAB) boolean sizeCheckEnabled,
                                                             final @Optional(defaultValue = "true")
-                                                            @Placement(tab = ADVANCED_TAB) boolean deleteFileAfterRead)
+                                                            @Placement(tab = ADVANCED_TAB) boolean deleteFileAfterRead,
+                                                            @Optional(defaultValue = "false")
+                                                            @Summary("Download big files in segments over several connections at the same time into a local spool file")
+                                                            @Placement(tab = ADVANCED_TAB) boolean segmentedDownload,
+                                                            @Optional(defaultValue = "#[64 * 1024 * 1024]")
+                                                            @Summary("Size of each segment (in bytes). Smaller files are read with a single connection")
+                                                            @Placement(tab = ADVANCED_TAB) long segmentSizeInBytes,
+                                                            @Optional(defaultValue = "4")
+                                                            @Summary("Number of segments downloaded at the same time")
+                                                            @Placement(tab = ADVANCED_TAB) int parallelism)
             throws IllegalStateException, ConnectionException, FileNotFoundException {
 
         if (_logger.isDebugEnabled()) _logger.debug("Reading the file {}", fileName);
@@ -159,8 +196,8 @@ public class FTPSOperations {
         //try(FTPSConnection connection = FTPClientProxyFactory.builder().connect(conn.getProvider())) {
         try {
             String path = FTPSUtil.trimPath(sourceFolder, fileName);
-            String timestamp = connection.ftpsClient().getModificationTime(path);
-            if (timestamp == null) {
+            FTPFile file = connection.ftpsClient().stat(path);
+            if (file == null) {
                 throw new FileNotFoundException("The file does not exists " + path);
             }
 
@@ -168,13 +205,17 @@ public class FTPSOperations {
                 throw new IllegalStateException("The file still being written. Try after sometime again...");
             }
 
-            FTPSFileAttributes attr = new FTPSFileAttributes(0L,
-                    false, false, false, sourceFolder,
-                    fileName, Calendar.getInstance().getTime(), null);
+            // Without MLST the type is only known for a path SIZE answered for, anything else is reported as
+            // neither a file nor a folder, with a size of 0
+            FTPSFileAttributes attr = new FTPSFileAttributes(Math.max(0L, file.getSize()),
+                    file.isFile(), file.isDirectory(), file.isSymbolicLink(), sourceFolder,
+                    fileName, file.getTimestamp() != null ? file.getTimestamp().getTime() :
+                    Calendar.getInstance().getTime(), null);
 
             final LazyInputStream lazyStream = new LazyInputStream(sourceFolder, fileName,
                     deleteFileAfterRead, connection.getProvider(),
-                    createIntermediateFile, attr.getTimestamp());
+                    createIntermediateFile, attr.getTimestamp()).withExpectedSize(file.getSize());
+            if (segmentedDownload) lazyStream.withSegmentedDownload(segmentSizeInBytes, parallelism);
 
             if (_logger.isDebugEnabled()) _logger.debug("{} file being read...", fileName);
 
@@ -195,6 +236,25 @@ public class FTPSOperations {
         }
     }
 
+    @Summary("Read several files of a folder at the same time over pooled connections. The results keep the " +
+            "order of the file names and a file which could not be read is reported in its attributes")
+    @MediaType(value = "*/*", strict = false)
+    @DisplayName("Read Many Files")
+    public List<Result<InputStream, FTPSFileStatus>> readMany(final @Config FTPSConfiguration ftpsConfig,
+                                                              final @Connection FTPSConnection connection,
+                                                              final @Optional(defaultValue = "/home/share") String sourceFolder,
+                                                              final @Optional(defaultValue = "#[payload]") List<String> fileNames,
+                                                              @Optional(defaultValue = "4")
+                                                              @Summary("Maximum number of files read at the same time")
+                                                              @Placement(tab = ADVANCED_TAB) int concurrency,
+                                                              final @Optional(defaultValue = "true")
+                                                              @Placement(tab = ADVANCED_TAB) boolean deleteFileAfterRead) {
+
+        if (_logger.isDebugEnabled()) _logger.debug("Reading {} files from {}", fileNames.size(), sourceFolder);
+        return new BulkDownload(connection.getProvider(), sourceFolder, concurrency, deleteFileAfterRead)
+                .download(connection, fileNames);
+    }
+
     @Summary("Create a new file in the FTPS server using the input content")
     @MediaType(value = "*/*", strict = false)
     @DisplayName("Write File")
@@ -207,7 +267,10 @@ public class FTPSOperations {
                          @Optional(defaultValue = "/home/share") String targetFolder,
                          @Optional(defaultValue = "true") @Placement(tab = ADVANCED_TAB) boolean overwriteFile,
                          @Optional(defaultValue = "true")
-                         @Placement(tab = ADVANCED_TAB) boolean createParentDirectory) throws ConnectionException {
+                         @Placement(tab = ADVANCED_TAB) boolean createParentDirectory,
+                         @Optional(defaultValue = "false")
+                         @Summary("Continue a broken upload from the size the server already has (REST+STOR or APPE) instead of failing")
+                         @Placement(tab = ADVANCED_TAB) boolean resumableUpload) throws ConnectionException {
 
         if (_logger.isDebugEnabled()) _logger.debug("Writing the file {}", targetFileName);
         if (!connection.isConnected()) {
@@ -218,37 +281,12 @@ public class FTPSOperations {
 
         //try(FTPSConnection connection = FTPClientProxyFactory.builder().connect(conn.getProvider())) {
         try {
-            String path = FTPSUtil.trimPath(targetFolder, targetFileName);
-            String timestamp = connection.ftpsClient().getModificationTime(path);
-            if (_logger.isDebugEnabled()) _logger.debug("timestamp={}", timestamp);
-            if (!overwriteFile) {
-                if (timestamp != null) {
-                    throw new IllegalStateException("File already exist at the target location: " + path);
-                }
-            }
             if (createParentDirectory) {
                 connection.ftpsClient().createParentDirectory(targetFolder);
             }
 
-            boolean status = false;
-            if (createIntermediateFile) {
-                String intermediateFileName = "__" + Calendar.getInstance().getTimeInMillis() + "_" + targetFileName;
-                String intermediatePath = FTPSUtil.trimPath(targetFolder, intermediateFileName);
-                status = connection.ftpsClient().storeFile(intermediatePath, sourceStream);
-                if (status) {
-                    if (timestamp != null) {
-                        if (_logger.isDebugEnabled()) _logger.debug("{} file deleted", path);
-                        connection.ftpsClient().deleteFile(path);
-                    }
-                    status = connection.ftpsClient().rename(intermediatePath, path);
-                }
-            } else {
-                if (timestamp != null) {
-                    if (_logger.isDebugEnabled()) _logger.debug("{} file deleted", path);
-                    connection.ftpsClient().deleteFile(path);
-                }
-                status = connection.ftpsClient().storeFile(path, sourceStream);
-            }
+            boolean status = FTPSFileWriter.write(connection, targetFolder, targetFileName, sourceStream,
+                    createIntermediateFile, overwriteFile, resumableUpload);
             if (status) {
                 if (_logger.isDebugEnabled()) _logger.debug("{} successfully created", targetFileName);
             } else {
@@ -264,6 +302,34 @@ public class FTPSOperations {
 
     }
 
+    @Summary("Create several files in the FTPS server at the same time over pooled connections. " +
+            "Every file gets its own status, in the same order as the input")
+    @MediaType(value = "*/*", strict = false)
+    @DisplayName("Write Many Files")
+    public List<FTPSFileStatus> writeMany(@Config final FTPSConfiguration ftpsConfiguration,
+                                          @Connection FTPSConnection connection,
+                                          @Optional(defaultValue = "#[payload]")
+                                          @Summary("File name, optionally with a sub folder of the target folder, and its " +
+                                                  "content as a stream, a text or binary")
+                                                  Map<String, Object> files,
+                                          @Optional(defaultValue = "false") boolean createIntermediateFile,
+                                          @Path(type = DIRECTORY, location = EXTERNAL)
+                                          @Optional(defaultValue = "/home/share") String targetFolder,
+                                          @Optional(defaultValue = "4")
+                                          @Summary("Maximum number of files written at the same time")
+                                          @Placement(tab = ADVANCED_TAB) int concurrency,
+                                          @Optional(defaultValue = "true") @Placement(tab = ADVANCED_TAB) boolean overwriteFile,
+                                          @Optional(defaultValue = "true")
+                                          @Placement(tab = ADVANCED_TAB) boolean createParentDirectory) throws ConnectionException {
+
+        if (_logger.isDebugEnabled()) _logger.debug("Writing {} files into {}", files.size(), targetFolder);
+        if (!connection.isConnected()) {
+            throw new ConnectionException("Connection is not healthy. It will be retried");
+        }
+        return new BulkUpload(connection.getProvider(), targetFolder, concurrency, createIntermediateFile,
+                overwriteFile, createParentDirectory).upload(connection, new LinkedHashMap<>(files));
+    }
+
     @Summary("Deleting a file from the FTPS server")
     @MediaType(value = "*/*", strict = false)
     @DisplayName("Delete File")
@@ -289,16 +355,16 @@ public class FTPSOperations {
             String intermediatePath = FTPSUtil.trimPath(targetFolder,
                     FTPSUtil.makeIntermediateFileName(timestamp, targetFileName));
 
-            String ts = connection.ftpsClient().getModificationTime(path);
-            String tsIntermediate = connection.ftpsClient().getModificationTime(intermediatePath);
-            if (ts == null && tsIntermediate == null) {
+            if (connection.ftpsClient().stat(path) != null) {
+                status = connection.ftpsClient().deleteFile(path);
+            } else if (connection.ftpsClient().stat(intermediatePath) != null) {
+                status = connection.ftpsClient().deleteFile(intermediatePath);
+            } else {
                 if (!ignoreErrorWhenFileNotPresent) {
                     throw new FileNotFoundException("Unable to find the file " + path);
                 }
                 return false;
             }
-            if (ts != null) status = connection.ftpsClient().deleteFile(path);
-            else status = connection.ftpsClient().deleteFile(intermediatePath);
 
             if (status) {
                 _logger.info("Deleted the file successfully");
@@ -332,7 +398,11 @@ public class FTPSOperations {
                          @Optional(defaultValue = "true")
                          @Placement(tab = ADVANCED_TAB)
                          @Summary("Ignore the error when folder does not exists")
-                                 boolean ignoreErrorWhenFolderDoesNotExists
+                                 boolean ignoreErrorWhenFolderDoesNotExists,
+                         @Optional(defaultValue = "4")
+                         @Placement(tab = ADVANCED_TAB)
+                         @Summary("Number of connections used at the same time by a recursive delete")
+                                 int concurrency
     ) throws RuntimeException, FileNotFoundException, ConnectionException {
 
         if (_logger.isDebugEnabled()) _logger.debug("Removing the directory {}", targetFolder);
@@ -349,7 +419,10 @@ public class FTPSOperations {
                 else throw new FileNotFoundException("Directory does not exists " + targetFolder);
             }
 
-            if (recursive) connection.ftpsClient().deleteRecursive(targetFolder);
+            if (recursive) {
+                if (concurrency > 1) new ParallelTreeDelete(connection.getProvider(), concurrency).delete(connection, targetFolder);
+                else connection.ftpsClient().deleteRecursive(targetFolder);
+            }
 
             if (connection.ftpsClient().removeDirectory(targetFolder))
                 _logger.info("Deleted the folder successfully");
@@ -360,7 +433,8 @@ public class FTPSOperations {
             throw fnf;
         } catch (Exception exp) {
             _logger.error("Something went wrong while deleting the folder {}", targetFolder, exp);
-            throw new RuntimeException("Something went wrong while deleting the folder " + targetFolder);
+            throw new RuntimeException("Something went wrong while deleting the folder " + targetFolder +
+                    ". " + exp.getMessage());
         }
         if (_logger.isDebugEnabled()) _logger.debug("{} successfully deleted", targetFolder);
         return true;
@@ -461,8 +535,8 @@ public class FTPSOperations {
                 String fName = FTPSUtil.makeIntermediateFileName(timestamp, sourceFileName);
                 String intermediatePath = FTPSUtil.trimPath(sourceFolder, fName);
 
-                if (connection.ftpsClient().getModificationTime(sourcePath) == null) {
-                    if (connection.ftpsClient().getModificationTime(intermediatePath) == null) {
+                if (connection.ftpsClient().stat(sourcePath) == null) {
+                    if (connection.ftpsClient().stat(intermediatePath) == null) {
                         throw new FileNotFoundException("The file does not exists " + sourcePath);
                     } else {
                         sourcePath = intermediatePath;
@@ -0,0 +1,88 @@
+package org.neointegrations.ftps.internal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The connections the workers of a parallel operation use, one per worker. An operation runs while its caller
+ * holds a connection of the same pool, so the extra ones are only taken when the pool can give them right away:
+ * blocking there would wait on the caller's own connection once the pool is at maxActive. The caller's
+ * connection can be one of the workers, so there is always at least one of them.
+ * <p>
+ * A connection which is no longer trusted is reconnected in place; the borrowed ones are given back on close.
+ */
+public final class WorkerConnections implements AutoCloseable {
+    private static final Logger _logger = LoggerFactory.getLogger(WorkerConnections.class);
+
+    private final FTPSConnectionProvider _provider;
+    private final FTPSConnection _held;
+    private final List<FTPSConnection> _connections = new ArrayList<>();
+    private final Set<FTPSConnection> _borrowed = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param held the caller's connection, used as the first worker, or null when it must not be used
+     * @param max  the most workers wanted
+     */
+    public WorkerConnections(final FTPSConnectionProvider provider, final FTPSConnection held, final int max) {
+        this._provider = provider;
+        this._held = held;
+        if (held != null) _connections.add(held);
+        while (_connections.size() < max) {
+            final FTPSConnection connection;
+            try {
+                connection = provider.tryConnect();
+            } catch (Exception exp) {
+                _logger.warn("Unable to open a worker connection {}", exp.getMessage(), exp);
+                break;
+            }
+            if (connection == null) break;
+            _connections.add(connection);
+            _borrowed.add(connection);
+        }
+        if (_logger.isDebugEnabled()) _logger.debug("{} worker connections of {} wanted", _connections.size(), max);
+    }
+
+    public int size() {
+        return _connections.size();
+    }
+
+    public List<FTPSConnection> connections() {
+        return Collections.unmodifiableList(_connections);
+    }
+
+    /**
+     * Reconnects a connection left in a state which is not worth trusting, after a failure or an aborted transfer.
+     *
+     * @return false when it could not be reconnected, the worker using it has to stop then
+     */
+    public boolean repair(final FTPSConnection connection) {
+        try {
+            connection.ftpsClient().reconnect();
+            return true;
+        } catch (Exception exp) {
+            _logger.warn("Unable to reconnect a worker connection {}", exp.getMessage(), exp);
+            discard(connection);
+            return false;
+        }
+    }
+
+    /**
+     * Closes a connection which failed instead of giving it back to the pool. The caller's connection is left to
+     * the runtime's own validation.
+     */
+    public void discard(final FTPSConnection connection) {
+        if (connection != _held && _borrowed.remove(connection)) _provider.invalidate(connection);
+    }
+
+    @Override
+    public void close() {
+        for (FTPSConnection connection : _borrowed) connection.close();
+        _borrowed.clear();
+    }
+}
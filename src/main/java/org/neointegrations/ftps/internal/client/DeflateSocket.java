@@ -0,0 +1,92 @@
+package org.neointegrations.ftps.internal.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Data connection socket for MODE Z transfers. Everything sent is deflated and everything received is inflated,
+ * so the transfer, listing and upload code of the FTP client works on plain bytes as in stream mode.
+ */
+class DeflateSocket extends Socket {
+    private final Socket _socket;
+    private InputStream _input;
+    private OutputStream _output;
+
+    DeflateSocket(final Socket socket) {
+        this._socket = socket;
+    }
+
+    @Override
+    public synchronized InputStream getInputStream() throws IOException {
+        if (_input == null) _input = new InflaterInputStream(_socket.getInputStream());
+        return _input;
+    }
+
+    @Override
+    public synchronized OutputStream getOutputStream() throws IOException {
+        // Closing it writes the end of the deflate stream before the socket is closed
+        if (_output == null) _output = new DeflaterOutputStream(_socket.getOutputStream());
+        return _output;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        _socket.close();
+    }
+
+    @Override
+    public boolean isClosed() {
+        return _socket.isClosed();
+    }
+
+    @Override
+    public boolean isConnected() {
+        return _socket.isConnected();
+    }
+
+    @Override
+    public InetAddress getInetAddress() {
+        return _socket.getInetAddress();
+    }
+
+    @Override
+    public int getPort() {
+        return _socket.getPort();
+    }
+
+    @Override
+    public int getLocalPort() {
+        return _socket.getLocalPort();
+    }
+
+    @Override
+    public synchronized void setSoTimeout(final int timeout) throws SocketException {
+        _socket.setSoTimeout(timeout);
+    }
+
+    @Override
+    public synchronized int getSoTimeout() throws SocketException {
+        return _socket.getSoTimeout();
+    }
+
+    @Override
+    public void shutdownInput() throws IOException {
+        _socket.shutdownInput();
+    }
+
+    @Override
+    public void shutdownOutput() throws IOException {
+        _socket.shutdownOutput();
+    }
+
+    @Override
+    public String toString() {
+        return "DeflateSocket[" + _socket + "]";
+    }
+}
@@ -0,0 +1,57 @@
+package org.neointegrations.ftps.internal.client;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remembers the folders which are known to exist on the server, so creating the parent folders of a path which
+ * was written to a moment ago does not walk it again with one CWD (and possibly MKD) per segment.
+ * <p>
+ * One cache is shared by all the connections of a connection provider. Entries expire after the configured time
+ * to live, since other clients may remove folders behind our back, and are dropped when this connector removes
+ * or renames a folder.
+ */
+public class DirectoryCache {
+    private final Cache<String, Boolean> _directories;
+
+    public DirectoryCache(final long ttlMillis, final int maximumSize) {
+        this._directories = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttlMillis, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    public boolean exists(final String dir) {
+        return _directories.getIfPresent(normalize(dir)) != null;
+    }
+
+    public void add(final String dir) {
+        _directories.put(normalize(dir), Boolean.TRUE);
+    }
+
+    /**
+     * Forgets the folder and every folder below it.
+     */
+    public void invalidate(final String dir) {
+        final String key = normalize(dir);
+        final String prefix = key + "/";
+        _directories.asMap().keySet().removeIf(k -> k.equals(key) || k.startsWith(prefix));
+    }
+
+    public void clear() {
+        _directories.invalidateAll();
+    }
+
+    public long size() {
+        return _directories.size();
+    }
+
+    static String normalize(final String dir) {
+        String key = dir.replace('\\', '/');
+        while (key.contains("//")) key = key.replace("//", "/");
+        if (key.length() > 1 && key.endsWith("/")) key = key.substring(0, key.length() - 1);
+        return key;
+    }
+}
@@ -1,6 +1,10 @@
 package org.neointegrations.ftps.internal.client;
 
 import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import nl.altindag.ssl.SSLFactory;
 import nl.altindag.ssl.util.KeyManagerUtils;
 import org.mule.runtime.api.connection.ConnectionException;
@@ -16,35 +20,29 @@ import javax.net.ssl.TrustManager;
 import javax.net.ssl.X509ExtendedKeyManager;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.security.*;
 import java.security.cert.CertificateException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 public class FTPClientProxyFactory {
     private static final Logger _logger = LoggerFactory.getLogger(FTPClientProxyFactory.class);
-    private static SSLContext _sslContext_ = null;
-    private static final ReentrantLock _lock_ = new ReentrantLock();
+    private static final int SSL_CONTEXT_CACHE_SIZE = 64;
+    private static final long SSL_CONTEXT_CACHE_EXPIRY_IN_MINUTES = 60;
 
-    private static FTPClientProxyFactory.Builder _builder_;
-    private static void cacheBuilder(FTPClientProxyFactory.Builder builder) {
-        if(Objects.isNull(_builder_) && Objects.nonNull(builder)) {
-            _lock_.lock();
-            try {
-                if(Objects.isNull(_builder_)) {
-                    _builder_ = builder;
-                }
-            } finally {
-                _lock_.unlock();
-            }
-        }
-    }
+    // SSLContexts keyed by the fingerprint of the connection and TLS parameters of each configuration.
+    // Guava's cache loads each key at most once without taking a lock shared by all the keys.
+    private static final Cache<String, SSLContext> _sslContexts_ = CacheBuilder.newBuilder()
+            .maximumSize(SSL_CONTEXT_CACHE_SIZE)
+            .expireAfterAccess(SSL_CONTEXT_CACHE_EXPIRY_IN_MINUTES, TimeUnit.MINUTES)
+            .build();
 
     public static FTPClientProxyFactory.Builder builder() {
-        if(Objects.nonNull(_builder_)) return _builder_;
-        else  return new FTPClientProxyFactory.Builder();
+        return new FTPClientProxyFactory.Builder();
     }
 
     public static class Builder {
@@ -70,6 +68,13 @@ public class FTPClientProxyFactory {
         private String _trustStoreType;
         private boolean _tlsV12Only;
         private boolean _sslContextCache;
+        private boolean _machineListing;
+        private DirectoryCache _directoryCache;
+        private boolean _compressedTransfer;
+        private boolean _clearDataChannel;
+        private boolean _clearCommandChannel;
+        private SocketOptions _socketOptions;
+        private SSLContext _sslContext;
         private Builder INSTANCE = null;
 
         private Builder() {
@@ -95,6 +100,8 @@ public class FTPClientProxyFactory {
             this._keystoreType = null;
             this._trustStoreType = null;
             this._sslContextCache = true;
+            this._sslContext = null;
+            this._machineListing = true;
 
             INSTANCE = this;
         }
@@ -118,7 +125,7 @@ public class FTPClientProxyFactory {
             if (Objects.isNull(sslContext)) {
                 throw new NullPointerException("sslContext can not be null");
             }
-            FTPClientProxyFactory._sslContext_ = sslContext;
+            this._sslContext = sslContext;
             return INSTANCE;
         }
 
@@ -233,29 +240,45 @@ public class FTPClientProxyFactory {
             return INSTANCE;
         }
 
+        public Builder withMachineListing(boolean machineListing) {
+            this._machineListing = machineListing;
+            return INSTANCE;
+        }
+
+        public Builder withDirectoryCache(DirectoryCache directoryCache) {
+            this._directoryCache = directoryCache;
+            return INSTANCE;
+        }
+
+        public Builder withCompressedTransfer(boolean compressedTransfer) {
+            this._compressedTransfer = compressedTransfer;
+            return INSTANCE;
+        }
+
+        public Builder withClearDataChannel(boolean clearDataChannel) {
+            this._clearDataChannel = clearDataChannel;
+            return INSTANCE;
+        }
+
+        public Builder withClearCommandChannel(boolean clearCommandChannel) {
+            this._clearCommandChannel = clearCommandChannel;
+            return INSTANCE;
+        }
+
+        public Builder withSocketOptions(SocketOptions socketOptions) {
+            this._socketOptions = socketOptions;
+            return INSTANCE;
+        }
+
         public Builder withSSLContextCache(boolean sslContextCache) {
             this._sslContextCache = sslContextCache;
             return INSTANCE;
         }
 
         public FTPSClientProxy build() throws ConnectionException {
-
-            if (this._sslContextCache == false) {
-                _sslContext_ = this.sslContext();
-            } else if (_sslContext_ == null) {
-                _lock_.lock();
-                try {
-                    if (_sslContext_ == null) {
-                        _sslContext_ = this.sslContext();
-                    }
-                } finally {
-                    _lock_.unlock();
-                }
-                cacheBuilder(this);
-            }
             FTPSClientProxy proxy =  new FTPSClientProxy(
                     _isImplicit,
-                    _sslContext_,
+                    resolveSSLContext(),
                     _sessionReuse,
                     _debugFtpCommand,
                     _enableCertificateValidation,
@@ -266,13 +289,50 @@ public class FTPClientProxyFactory {
                     _port,
                     _timeout,
                     _socketTimeout,
-                    _bufferSizeInBytes);
+                    _bufferSizeInBytes,
+                    _machineListing,
+                    _directoryCache,
+                    _compressedTransfer,
+                    _clearDataChannel,
+                    _clearCommandChannel,
+                    _socketOptions);
             proxy.connect();
             return proxy;
 
         }
-        public boolean canIReuse() {
-            return Objects.nonNull(_builder_);
+
+        /**
+         * Fingerprint of every parameter which identifies the server, the account and the TLS material.
+         * Two builders with the same fingerprint can safely share one SSLContext.
+         */
+        public String fingerprint() {
+            return Hashing.sha256().newHasher()
+                    .putBoolean(_isImplicit)
+                    .putBoolean(_tlsV12Only)
+                    .putBoolean(_enableCertificateValidation)
+                    .putString(Strings.nullToEmpty(_host), StandardCharsets.UTF_8).putInt(_port)
+                    .putString(Strings.nullToEmpty(_user), StandardCharsets.UTF_8).putChar('\0')
+                    .putString(Strings.nullToEmpty(_trustStorePath), StandardCharsets.UTF_8).putChar('\0')
+                    .putString(Strings.nullToEmpty(_trustStorePassword), StandardCharsets.UTF_8).putChar('\0')
+                    .putString(Strings.nullToEmpty(_trustStoreType), StandardCharsets.UTF_8).putChar('\0')
+                    .putString(Strings.nullToEmpty(_keyStorePath), StandardCharsets.UTF_8).putChar('\0')
+                    .putString(Strings.nullToEmpty(_keyStorePassword), StandardCharsets.UTF_8).putChar('\0')
+                    .putString(Strings.nullToEmpty(_keyPassword), StandardCharsets.UTF_8).putChar('\0')
+                    .putString(Strings.nullToEmpty(_keyAlias), StandardCharsets.UTF_8).putChar('\0')
+                    .putString(Strings.nullToEmpty(_keystoreType), StandardCharsets.UTF_8)
+                    .hash()
+                    .toString();
+        }
+
+        private SSLContext resolveSSLContext() throws ConnectionException {
+            if (this._sslContext != null) return this._sslContext;
+            if (!this._sslContextCache) return this.sslContext();
+            try {
+                return _sslContexts_.get(fingerprint(), this::sslContext);
+            } catch (ExecutionException | UncheckedExecutionException exp) {
+                if (exp.getCause() instanceof ConnectionException) throw (ConnectionException) exp.getCause();
+                throw new ConnectionException(exp.getCause());
+            }
         }
 
         private SSLContext sslContext() throws ConnectionException {
@@ -290,10 +350,10 @@ public class FTPClientProxyFactory {
                 }
                 if (_logger.isDebugEnabled()) _logger.debug("**** Reading keystore {}", this._keyStorePath);
                 try (InputStream stream = FTPSUtil.getStream(this._keyStorePath)) {
-                    if (Strings.isNullOrEmpty(this._keystoreType))
-                        this._keyStorePath = KeyStore.getDefaultType();
+                    final String keystoreType = Strings.isNullOrEmpty(this._keystoreType) ?
+                            KeyStore.getDefaultType() : this._keystoreType;
 
-                    KeyStore keyStore = KeyStore.getInstance(this._keystoreType);
+                    KeyStore keyStore = KeyStore.getInstance(keystoreType);
                     keyStore.load(stream, this._keyStorePassword.toCharArray());
                     Map<String, char[]> map = new HashMap();
                     map.put(this._keyAlias, this._keyPassword.toCharArray());
@@ -319,11 +379,11 @@ public class FTPClientProxyFactory {
                 if (this._trustStorePassword == null)
                     throw new IllegalArgumentException("Trust Store location and its password must be provided");
 
-                if (Strings.isNullOrEmpty(this._trustStoreType))
-                    this._trustStoreType = KeyStore.getDefaultType();
+                final String trustStoreType = Strings.isNullOrEmpty(this._trustStoreType) ?
+                        KeyStore.getDefaultType() : this._trustStoreType;
 
                 if (_logger.isDebugEnabled()) _logger.debug("**** Reading TrustStore. {}", this._trustStorePath);
-                builder.withTrustMaterial(FTPSUtil.getStream(this._trustStorePath), this._trustStorePassword.toCharArray(), this._trustStoreType);
+                builder.withTrustMaterial(FTPSUtil.getStream(this._trustStorePath), this._trustStorePassword.toCharArray(), trustStoreType);
 
             }
 
@@ -0,0 +1,81 @@
+package org.neointegrations.ftps.internal.client;
+
+import org.apache.commons.net.ftp.FTPFile;
+import org.apache.commons.net.ftp.FTPFileEntryParser;
+import org.neointegrations.ftps.internal.util.FTPSUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.net.Socket;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Parses a directory listing entry by entry while it is still being received on the data connection, so only
+ * one {@link FTPFile} is held in memory at a time. The listing has to be closed (or read until the end) before
+ * the control connection can be used for anything else.
+ */
+public class FTPFileIterator implements Iterator<FTPFile>, Closeable {
+    private static final Logger _logger = LoggerFactory.getLogger(FTPFileIterator.class);
+
+    private final FTPSClient _client;
+    private final Socket _socket;
+    private final BufferedReader _reader;
+    private final FTPFileEntryParser _parser;
+    private FTPFile _next = null;
+    private boolean _closed = false;
+
+    FTPFileIterator(final FTPSClient client,
+                    final Socket socket,
+                    final FTPFileEntryParser parser,
+                    final String encoding) throws IOException {
+        this._client = client;
+        this._socket = socket;
+        this._parser = parser;
+        this._reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), encoding));
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (_next != null) return true;
+        if (_closed) return false;
+        try {
+            String entry;
+            while ((entry = _parser.readNextEntry(_reader)) != null) {
+                _next = _parser.parseFTPEntry(entry);
+                if (_next != null) return true;
+            }
+        } catch (IOException exp) {
+            close();
+            throw new UncheckedIOException(exp);
+        }
+        close();
+        return false;
+    }
+
+    @Override
+    public FTPFile next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        FTPFile file = _next;
+        _next = null;
+        return file;
+    }
+
+    @Override
+    public void close() {
+        if (_closed) return;
+        _closed = true;
+        FTPSUtil.close(_reader);
+        FTPSUtil.close(_socket);
+        try {
+            _client.completePendingCommand();
+        } catch (IOException exp) {
+            _logger.warn("An exception occurred while completing the listing {}", exp.getMessage(), exp);
+        }
+    }
+}
@@ -1,21 +1,31 @@
 package org.neointegrations.ftps.internal.client;
 
+import org.apache.commons.net.ftp.FTPClientConfig;
+import org.apache.commons.net.ftp.FTPCmd;
+import org.apache.commons.net.ftp.FTPFileEntryParser;
+import org.apache.commons.net.ftp.FTPReply;
+import org.apache.commons.net.ftp.parser.DefaultFTPFileEntryParserFactory;
+import org.apache.commons.net.ftp.parser.MLSxEntryParser;
 import org.mule.runtime.api.connection.ConnectionException;
 import org.neointegrations.ftps.internal.util.FTPSUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.net.ssl.*;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.IOException;
-import java.lang.reflect.Field;
-import java.lang.reflect.Method;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
 import java.net.Socket;
-import java.util.Locale;
 
 public class FTPSClient extends org.apache.commons.net.ftp.FTPSClient {
 
     private static final Logger _logger = LoggerFactory.getLogger(FTPSClient.class);
     private boolean _sessionReuse = false;
+    private FTPClientConfig _config = null;
+    private boolean _compressedTransfer = false;
+    private Socket _plainSocket = null;
 
     protected FTPSClient(final boolean isImplicit,
                       final SSLContext sslContext,
@@ -24,6 +34,93 @@ public class FTPSClient extends org.apache.commons.net.ftp.FTPSClient {
         super(isImplicit, sslContext);
         this._sessionReuse = sessionReuse;
     }
+    @Override
+    protected void sslNegotiation() throws IOException {
+        // The TLS socket is layered over this one without auto close, so it is still usable after CCC
+        _plainSocket = _socket_;
+        super.sslNegotiation();
+    }
+
+    /**
+     * Sends CCC and makes sure the control connection carries on in clear over the underlying socket once the
+     * server accepted it (RFC 4217). commons-net swaps the socket and the control reader and writer when it sees
+     * the 200 reply; the switch is done here when the socket is still the TLS one afterwards.
+     *
+     * @return false when the control connection is not protected or the server refused CCC
+     */
+    boolean clearCommandChannel() throws IOException {
+        if (!(_socket_ instanceof SSLSocket) || _plainSocket == null || _plainSocket == _socket_) return false;
+        final int reply;
+        try {
+            reply = execCCC();
+        } catch (SSLException exp) {
+            // Raised by commons-net when CCC is refused, the TLS connection is left as it was
+            if (_logger.isDebugEnabled()) _logger.debug("CCC refused: {}", exp.getMessage());
+            return false;
+        }
+        if (!FTPReply.isPositiveCompletion(reply)) return false;
+        if (!(_socket_ instanceof SSLSocket)) return true;
+
+        // Sends close_notify, the plain socket stays open as the TLS one was layered without auto close
+        _socket_.close();
+        _socket_ = _plainSocket;
+        _input_ = _socket_.getInputStream();
+        _output_ = _socket_.getOutputStream();
+        _controlInput_ = new BufferedReader(new InputStreamReader(_input_, getControlEncoding()));
+        _controlOutput_ = new BufferedWriter(new OutputStreamWriter(_output_, getControlEncoding()));
+        return true;
+    }
+
+    @Override
+    public void configure(final FTPClientConfig config) {
+        super.configure(config);
+        this._config = config;
+    }
+
+    /**
+     * Switches between MODE Z (deflate) and MODE S (stream) for the following transfers.
+     *
+     * @return false when the server refused the mode, the current mode is kept then
+     */
+    boolean setCompressedTransfer(final boolean compressed) throws IOException {
+        if (compressed == _compressedTransfer) return true;
+        if (!FTPReply.isPositiveCompletion(sendCommand("MODE", compressed ? "Z" : "S"))) return false;
+        _compressedTransfer = compressed;
+        return true;
+    }
+
+    boolean isCompressedTransfer() {
+        return _compressedTransfer;
+    }
+
+    @Override
+    protected Socket _openDataConnection_(final String command, final String arg) throws IOException {
+        final Socket socket = super._openDataConnection_(command, arg);
+        if (socket == null || !_compressedTransfer) return socket;
+        return new DeflateSocket(socket);
+    }
+
+    /**
+     * Opens a LIST (or MLSD) data connection and returns an iterator which parses the entries as they arrive,
+     * instead of reading the whole listing into memory like {@code listFiles} does.
+     *
+     * @return null when the server refused the listing
+     */
+    FTPFileIterator openListing(final String pathname, final boolean machineListing) throws IOException {
+        final FTPFileEntryParser parser;
+        final Socket socket;
+        if (machineListing) {
+            parser = MLSxEntryParser.getInstance();
+            socket = _openDataConnection_(FTPCmd.MLSD, pathname);
+        } else {
+            final FTPClientConfig config = _config != null ? _config : new FTPClientConfig(getSystemType());
+            parser = new DefaultFTPFileEntryParserFactory().createFileEntryParser(config);
+            socket = _openDataConnection_(FTPCmd.LIST, getListArguments(pathname));
+        }
+        if (socket == null) return null;
+        return new FTPFileIterator(this, socket, parser, getControlEncoding());
+    }
+
     // To resolve [NET-408 Issue](https://issues.apache.org/jira/browse/NET-408), below property is needed
     // to share SSL session with the data connection
     @Override
@@ -32,32 +129,13 @@ public class FTPSClient extends org.apache.commons.net.ftp.FTPSClient {
             super._prepareDataSocket_(socket);
             return;
         }
-        if (socket instanceof SSLSocket) {
-            // Control socket is SSL
-            final SSLSession session = ((SSLSocket) _socket_).getSession();
-            if(_logger.isDebugEnabled()) _logger.debug("sessionId = {}", FTPSUtil.toHexString(session.getId()));
-            if (session.isValid()) {
-                final SSLSessionContext context = session.getSessionContext();
-                try {
-                    final Field sessionHostPortCache = context.getClass().getDeclaredField("sessionHostPortCache");
-                    sessionHostPortCache.setAccessible(true);
-                    final Object cache = sessionHostPortCache.get(context);
-                    final Method method = cache.getClass().getDeclaredMethod("put", Object.class, Object.class);
-                    method.setAccessible(true);
-                    method.invoke(cache, String
-                            .format("%s:%s", socket.getInetAddress().getHostName(), String.valueOf(socket.getPort()))
-                            .toLowerCase(Locale.ROOT), session);
-                    method.invoke(cache, String
-                            .format("%s:%s", socket.getInetAddress().getHostAddress(), String.valueOf(socket.getPort()))
-                            .toLowerCase(Locale.ROOT), session);
-                } catch (NoSuchFieldException e) {
-                    throw new IOException(e);
-                } catch (Exception e) {
-                    throw new IOException(e);
-                }
-            } else {
-                throw new InvalidSSLSessionException("Invalid SSL Session");
+        if (socket instanceof SSLSocket && _socket_ instanceof SSLSocket) {
+            // Control socket is SSL (it is not any more after CCC)
+            final SSLSocket control = (SSLSocket) _socket_;
+            if (_logger.isDebugEnabled()) {
+                _logger.debug("sessionId = {}", FTPSUtil.toHexString(control.getSession().getId()));
             }
+            SSLSessionReuse.share(control, socket);
         }
     }
 }
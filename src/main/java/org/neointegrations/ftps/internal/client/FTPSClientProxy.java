@@ -1,6 +1,7 @@
 package org.neointegrations.ftps.internal.client;
 
 import com.google.common.base.Strings;
+import com.google.common.io.CountingInputStream;
 import com.google.common.primitives.Booleans;
 import org.apache.commons.net.PrintCommandListener;
 import org.apache.commons.net.ftp.*;
@@ -20,6 +21,9 @@ import java.io.InputStream;
 import java.io.PrintWriter;
 import java.lang.reflect.Field;
 import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
 import java.util.Objects;
 
 public class FTPSClientProxy implements AutoCloseable {
@@ -38,6 +42,16 @@ public class FTPSClientProxy implements AutoCloseable {
     private final int _timeout;
     private final int _socketTimeout;
     private final int _bufferSizeInBytes;
+    private final boolean _preferMachineListing;
+    private final DirectoryCache _directoryCache;
+    private final boolean _preferCompressedTransfer;
+    private final boolean _clearDataChannel;
+    private final boolean _clearCommandChannel;
+    private final SocketOptions _socketOptions;
+    private boolean _machineListing = false;
+    private boolean _compressedTransfer = false;
+    private String _loginDirectory = null;
+    private boolean _workingDirectoryChanged = false;
 
     public FTPSClientProxy(final boolean isImplicit,
                            final SSLContext sslContext,
@@ -51,7 +65,13 @@ public class FTPSClientProxy implements AutoCloseable {
                            final int port,
                            final int timeout,
                            final int socketTimeout,
-                           final int bufferSizeInBytes) throws ConnectionException {
+                           final int bufferSizeInBytes,
+                           final boolean preferMachineListing,
+                           final DirectoryCache directoryCache,
+                           final boolean preferCompressedTransfer,
+                           final boolean clearDataChannel,
+                           final boolean clearCommandChannel,
+                           final SocketOptions socketOptions) throws ConnectionException {
        this._isImplicit = isImplicit;
        this._sslContext = sslContext;
        this._sessionReuse = sessionReuse;
@@ -65,6 +85,12 @@ public class FTPSClientProxy implements AutoCloseable {
        this._timeout = timeout;
        this._socketTimeout = socketTimeout;
        this._bufferSizeInBytes = bufferSizeInBytes;
+       this._preferMachineListing = preferMachineListing;
+       this._directoryCache = directoryCache;
+       this._preferCompressedTransfer = preferCompressedTransfer;
+       this._clearDataChannel = clearDataChannel;
+       this._clearCommandChannel = clearCommandChannel;
+       this._socketOptions = socketOptions != null ? socketOptions : SocketOptions.defaults();
     }
 
     public boolean isAvailable() {
@@ -82,6 +108,10 @@ public class FTPSClientProxy implements AutoCloseable {
         return _client.getReplyString();
     }
 
+    public int getReplyCode() {
+        return _client.getReplyCode();
+    }
+
     public void reconnect() throws ConnectionException {
         this.close();
         this.connect();
@@ -105,6 +135,8 @@ public class FTPSClientProxy implements AutoCloseable {
             _client.connect(_host, _port);
 
             _client.setSoTimeout(_socketTimeout);
+            _client.setTcpNoDelay(_socketOptions.isTcpNoDelay());
+            _client.setKeepAlive(_socketOptions.isKeepAlive());
             _client.login(_user, _password);
             _client.enterLocalPassiveMode();
 
@@ -118,10 +150,34 @@ public class FTPSClientProxy implements AutoCloseable {
             }
 
             _client.execPBSZ(0);
-            _client.execPROT("P");
+            // PROT C leaves the data connections in clear, only the login and the commands are protected
+            _client.execPROT(_clearDataChannel ? "C" : "P");
+            if (_clearCommandChannel) {
+                // CCC drops TLS from the control connection once the login is done
+                if (!_client.clearCommandChannel()) {
+                    _logger.warn("{} refused CCC, the control connection stays protected", _host);
+                }
+            }
             _client.setFileType(FTP.BINARY_FILE_TYPE);
             _client.setBufferSize(_bufferSizeInBytes);
             _client.enterLocalPassiveMode();
+            applyDataSocketOptions();
+
+            // MLSD/MLST (RFC 3659) return exact size, UTC modification time and type in a fixed format,
+            // so prefer them over LIST/MDTM/SIZE when the server advertises them in FEAT.
+            _machineListing = _preferMachineListing && _client.hasFeature(FTPCmd.MLST);
+            if (_logger.isDebugEnabled()) _logger.debug("Machine listing (MLSD/MLST) in use: {}", _machineListing);
+
+            // MODE Z deflates the data connections, it is only used when asked for and advertised in FEAT
+            _compressedTransfer = _preferCompressedTransfer && _client.hasFeature("MODE", "Z") &&
+                    _client.setCompressedTransfer(true);
+            if (_preferCompressedTransfer && !_compressedTransfer) {
+                _logger.info("{} does not support MODE Z, using stream mode", _host);
+            }
+
+            // A pooled connection goes back to this folder when it is released
+            _loginDirectory = _client.printWorkingDirectory();
+            _workingDirectoryChanged = false;
 
             if (_logger.isDebugEnabled()) _logger.debug("Connection started");
         } catch (IOException e) {
@@ -136,11 +192,46 @@ public class FTPSClientProxy implements AutoCloseable {
         }
     }
 
-    public  void completePendingCommand() {
+    private void applyDataSocketOptions() throws IOException {
+        if (_socketOptions.getDataTimeout() > 0) _client.setDataTimeout(_socketOptions.getDataTimeout());
+        if (_socketOptions.getControlKeepAliveSeconds() > 0) {
+            // NOOPs on the control connection during long transfers, so firewalls do not drop it as idle
+            _client.setControlKeepAliveTimeout(_socketOptions.getControlKeepAliveSeconds());
+        }
+
+        int sendBufferSize = _socketOptions.getSendBufferSize();
+        int receiveBufferSize = _socketOptions.getReceiveBufferSize();
+        if (_socketOptions.isAutoTune() && (sendBufferSize == 0 || receiveBufferSize == 0)) {
+            final double rtt = measureRoundTripMillis();
+            final int size = _socketOptions.bufferSizeFor(rtt);
+            if (sendBufferSize == 0) sendBufferSize = size;
+            if (receiveBufferSize == 0) receiveBufferSize = size;
+            if (_logger.isDebugEnabled()) _logger.debug("RTT to {} is {}ms, data socket buffers set to {} bytes", _host, rtt, size);
+        }
+        if (sendBufferSize > 0) _client.setSendDataSocketBufferSize(sendBufferSize);
+        if (receiveBufferSize > 0) _client.setReceieveDataSocketBufferSize(receiveBufferSize);
+    }
+
+    // The fastest of a few NOOPs, so a single delayed reply does not inflate the buffers
+    private double measureRoundTripMillis() throws IOException {
+        long best = Long.MAX_VALUE;
+        for (int idx = 0; idx < 3; idx++) {
+            final long start = System.nanoTime();
+            _client.sendNoOp();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best / 1_000_000d;
+    }
+
+    /**
+     * @return false when the server did not confirm the transfer, for example when it aborted it
+     */
+    public  boolean completePendingCommand() {
         try {
-            if(_client != null) _client.completePendingCommand();
+            return _client != null && _client.completePendingCommand();
         } catch (Exception e) {
             _logger.warn("An exception occurred while calling completePendingCommand() {}", e.getMessage(), e);
+            return false;
         }
     }
 
@@ -155,6 +246,7 @@ public class FTPSClientProxy implements AutoCloseable {
         }
     }
     public boolean changeWorkingDirectory(String path) throws IOException, ConnectionException {
+        _workingDirectoryChanged = true;
         try {
             //this.requiredCommand();
             return _client.changeWorkingDirectory(path);
@@ -176,6 +268,8 @@ public class FTPSClientProxy implements AutoCloseable {
     }
 
     public boolean rename(String sourcePath, String targetPath) throws IOException, ConnectionException {
+        // The source may be a folder, which does not exist under its old name afterwards
+        if (_directoryCache != null) _directoryCache.invalidate(sourcePath);
         try {
             //this.requiredCommand();
             this._client.deleteFile(targetPath);
@@ -190,11 +284,11 @@ public class FTPSClientProxy implements AutoCloseable {
         FTPFile[] list = null;
         try {
             //this.requiredCommand();
-            list =  _client.listDirectories(folder);
+            list =  doListDirectories(folder);
         } catch(InvalidSSLSessionException  exp) {
             _logger.error("An exception occurred while calling listDirectories {}", exp.getMessage(),  exp);
             this.connect();
-            list = _client.listDirectories(folder);
+            list = doListDirectories(folder);
         }
         int reply = _client.getReplyCode();
         if (_logger.isDebugEnabled()) _logger.debug("ReplyCode: {}", reply);
@@ -216,6 +310,7 @@ public class FTPSClientProxy implements AutoCloseable {
         }
     }
     public boolean removeDirectory(String folder) throws IOException, ConnectionException {
+        if (_directoryCache != null) _directoryCache.invalidate(folder);
         try {
             //this.requiredCommand();
             return _client.removeDirectory(folder);
@@ -227,22 +322,59 @@ public class FTPSClientProxy implements AutoCloseable {
     }
 
     public boolean storeFile(String path, InputStream stream) throws IOException, ConnectionException {
+        final CountingInputStream counting = new CountingInputStream(stream);
         try {
             //this.requiredCommand();
-            return _client.storeFile(path, stream);
+            useCompression(_compressedTransfer);
+            return _client.storeFile(path, counting);
         } catch(InvalidSSLSessionException  exp) {
             _logger.error("An exception occurred while calling storeFile {}", exp.getMessage(), exp);
+            // Starting over with a partly consumed stream would silently upload a truncated file
+            if (counting.getCount() > 0) {
+                throw new IOException("Unable to restart the upload of " + path + ", " + counting.getCount() +
+                        " bytes were already read from the source", exp);
+            }
             connect();
             _client.deleteFile(path);
             //requiredCommand();
+            return _client.storeFile(path, counting);
+        }
+    }
+
+    /**
+     * Continues an upload at {@code offset}, with REST and STOR when the server supports it and with APPE otherwise.
+     * The stream must be positioned at {@code offset} of the source.
+     */
+    public boolean storeFile(String path, InputStream stream, long offset) throws IOException, ConnectionException {
+        if (offset <= 0) return storeFile(path, stream);
+        final CountingInputStream counting = new CountingInputStream(stream);
+        try {
+            return doStoreFile(path, counting, offset);
+        } catch(InvalidSSLSessionException  exp) {
+            _logger.error("An exception occurred while calling storeFile {}", exp.getMessage(), exp);
+            if (counting.getCount() > 0) {
+                throw new IOException("Unable to restart the upload of " + path + " at " + offset + ", " +
+                        counting.getCount() + " bytes were already read from the source", exp);
+            }
+            connect();
+            return doStoreFile(path, counting, offset);
+        }
+    }
+
+    private boolean doStoreFile(String path, InputStream stream, long offset) throws IOException {
+        useCompression(false);
+        if (isRestartSupported()) {
+            _client.setRestartOffset(offset);
             return _client.storeFile(path, stream);
         }
+        return _client.appendFile(path, stream);
     }
 
     public InputStream retrieveFileStream(String path) throws IOException, ConnectionException {
         InputStream is = null;
         try {
             //this.requiredCommand();
+            useCompression(_compressedTransfer);
             is = _client.retrieveFileStream(path);
         } catch(InvalidSSLSessionException  exp) {
             _logger.error("An exception occurred while calling retrieveFileStream {}", exp.getMessage());
@@ -259,16 +391,62 @@ public class FTPSClientProxy implements AutoCloseable {
         return is;
     }
 
+    /**
+     * Starts retrieving a file from the given offset using REST.
+     *
+     * @return null when the server refused to restart the transfer at that offset
+     */
+    public InputStream retrieveFileStream(String path, long offset) throws IOException, ConnectionException {
+        InputStream is = null;
+        try {
+            useCompression(false);
+            _client.setRestartOffset(offset);
+            is = _client.retrieveFileStream(path);
+        } catch(InvalidSSLSessionException  exp) {
+            _logger.error("An exception occurred while calling retrieveFileStream {}", exp.getMessage());
+            this.connect();
+            useCompression(false);
+            _client.setRestartOffset(offset);
+            is = _client.retrieveFileStream(path);
+        }
+        if (is == null) {
+            _logger.warn("Unable to read the file from offset {}. ReplyCode: {}, path: {}",
+                    offset, _client.getReplyCode(), path);
+        }
+        return is;
+    }
+
+    public boolean isCompressedTransfer() {
+        return _compressedTransfer;
+    }
+
+    // REST is only defined for stream mode, so transfers at an offset switch MODE Z off until the next plain one
+    private void useCompression(boolean compressed) throws IOException {
+        if (_client.isCompressedTransfer() == compressed) return;
+        if (!_client.setCompressedTransfer(compressed)) {
+            _logger.warn("Unable to switch MODE {} on {}", compressed ? "Z" : "S", _host);
+        }
+    }
+
+    public boolean isRestartSupported() {
+        try {
+            return _client.hasFeature("REST", "STREAM");
+        } catch (IOException exp) {
+            if (_logger.isDebugEnabled()) _logger.debug("Unable to query REST support", exp);
+            return false;
+        }
+    }
+
     public FTPFile[] listFiles(String sourceFolder) throws IOException, ConnectionException {
         FTPFile[] list = null;
         try {
             //this.requiredCommand();
             if (_logger.isDebugEnabled()) _logger.debug("Listing: {}", sourceFolder);
-            list = _client.listFiles(sourceFolder);
+            list = doListFiles(sourceFolder);
         } catch(InvalidSSLSessionException  exp) {
             _logger.warn("Exception while listening folder. {}", exp.getMessage());
             this.connect();
-            list = _client.listFiles(sourceFolder);
+            list = doListFiles(sourceFolder);
         }
 
         int reply = _client.getReplyCode();
@@ -280,6 +458,105 @@ public class FTPSClientProxy implements AutoCloseable {
         return list;
     }
 
+    public FTPFileIterator iterateFiles(String sourceFolder) throws IOException, ConnectionException {
+        FTPFileIterator iterator = null;
+        try {
+            if (_logger.isDebugEnabled()) _logger.debug("Listing (streaming): {}", sourceFolder);
+            iterator = _client.openListing(sourceFolder, _machineListing);
+        } catch(InvalidSSLSessionException  exp) {
+            _logger.warn("Exception while listening folder. {}", exp.getMessage());
+            this.connect();
+            iterator = _client.openListing(sourceFolder, _machineListing);
+        }
+
+        int reply = _client.getReplyCode();
+        if (_logger.isDebugEnabled()) _logger.debug("ReplyCode: {}", reply);
+        if (iterator == null || FTPReply.isNegativePermanent(reply)) {
+            _logger.error("File / Folder does not exists. ReplyCode={}, Folder={}", reply, sourceFolder);
+            throw new RuntimeException("File / Folder does not exists");
+        }
+        return iterator;
+    }
+
+    /**
+     * Returns the size, modification time and type of a file or folder in one round trip when MLST is available.
+     * Otherwise the modification time comes from MDTM and the size from SIZE: a path SIZE answers for is a file,
+     * the type of any other path is left {@link FTPFile#UNKNOWN_TYPE} and its size -1.
+     *
+     * @return null when the path does not exist
+     */
+    public FTPFile stat(String path) throws IOException, ConnectionException {
+        try {
+            return doStat(path);
+        } catch(InvalidSSLSessionException  exp) {
+            _logger.error("An exception occurred while calling stat {}", exp.getMessage(),  exp);
+            this.connect();
+            return doStat(path);
+        }
+    }
+
+    /**
+     * @return the size of the file, or -1 when it is unknown
+     */
+    public long size(String path) throws IOException, ConnectionException {
+        if (_machineListing) {
+            FTPFile file = this.stat(path);
+            return file == null ? -1L : file.getSize();
+        }
+        return parseSize(_client.getSize(path));
+    }
+
+    public boolean isMachineListing() {
+        return _machineListing;
+    }
+
+    private FTPFile doStat(String path) throws IOException {
+        if (_machineListing) return _client.mlistFile(path);
+        FTPFile file = _client.mdtmFile(path);
+        if (file == null) return null;
+        // MDTM only tells the time stamp, SIZE is only answered for files
+        long size = parseSize(_client.getSize(path));
+        if (size >= 0) {
+            file.setSize(size);
+            file.setType(FTPFile.FILE_TYPE);
+        }
+        return file;
+    }
+
+    private static long parseSize(String reply) {
+        if (reply == null) return -1L;
+        try {
+            String[] s = reply.trim().split(" ");
+            return Long.parseLong(s[s.length - 1].trim());
+        } catch (NumberFormatException exp) {
+            _logger.warn("Unable to parse the SIZE reply {}", reply);
+            return -1L;
+        }
+    }
+
+    private FTPFile[] doListFiles(String folder) throws IOException {
+        if (_machineListing) return _client.mlistDir(folder);
+        return _client.listFiles(folder);
+    }
+
+    private FTPFile[] doListDirectories(String folder) throws IOException {
+        if (!_machineListing) return _client.listDirectories(folder);
+        List<FTPFile> dirs = new ArrayList<>();
+        for (FTPFile file : _client.mlistDir(folder)) {
+            if (file != null && file.isDirectory() && !isSelfOrParent(file)) dirs.add(file);
+        }
+        return dirs.toArray(new FTPFile[0]);
+    }
+
+    // MLSD lists the folder itself (type=cdir) and its parent (type=pdir) as directories as well
+    static boolean isSelfOrParent(FTPFile file) {
+        if (".".equals(file.getName()) || "..".equals(file.getName())) return true;
+        String raw = file.getRawListing();
+        if (raw == null) return false;
+        raw = raw.toLowerCase(Locale.ROOT);
+        return raw.contains("type=cdir") || raw.contains("type=pdir");
+    }
+
     public void deleteRecursive(String targetFolder) throws IOException, ConnectionException {
         FTPFile[] folders = this.listDirectories(targetFolder);
         FTPFile[] files = this.listFiles(targetFolder);
@@ -304,24 +581,11 @@ public class FTPSClientProxy implements AutoCloseable {
     }
 
     public boolean sizeCheck(String path, long timeBetweenSizeCheckInSeconds) throws IOException, InterruptedException, ConnectionException {
-        //this.requiredCommand();
-        this.sendCommand("SIZE", path);
-
-        String reply = this.getReplyString();
-        String[] s = reply.split(" ");
-        long start = -11111;
-        if (s != null && s.length > 0) start = Long.valueOf(s[s.length - 1].trim());
+        long start = this.size(path);
         Thread.sleep(timeBetweenSizeCheckInSeconds * 1000);
+        long end = this.size(path);
 
-        //this.requiredCommand();
-        this.sendCommand("SIZE", path);
-
-        reply = this.getReplyString();
-        s = reply.split(" ");
-        long end = -22222;
-        if (s != null && s.length > 0) end = Long.valueOf(s[s.length - 1].trim());
-
-        if (start == 0 && end == 0) return false;
+        if (start <= 0 && end <= 0) return false;
         else return start == end;
 
     }
@@ -330,6 +594,10 @@ public class FTPSClientProxy implements AutoCloseable {
         if (dir.endsWith("/") || dir.endsWith("\\")) {
             dir = dir.substring(0, dir.length() - 1);
         }
+        if (_directoryCache != null && _directoryCache.exists(dir)) {
+            if (_logger.isDebugEnabled()) _logger.debug("{} is known to exist", dir);
+            return true;
+        }
         String[] dirs = dir.split("[\\\\|/]");
         StringBuilder sb = new StringBuilder();
         for (int idx = 0; idx < dirs.length; idx++) {
@@ -347,9 +615,11 @@ public class FTPSClientProxy implements AutoCloseable {
             String cd = sb.substring(0, sb.length() - 1);
             boolean DIR_NOT_EXISTS = false;
             boolean DIR_CREATE_FAILURE = false;
+            if (_directoryCache != null && _directoryCache.exists(cd)) continue;
             if (this.changeWorkingDirectory(cd) == DIR_NOT_EXISTS) {
                 if (this.makeDirectory(cd) == DIR_CREATE_FAILURE) return DIR_CREATE_FAILURE;
             }
+            if (_directoryCache != null) _directoryCache.add(cd);
         }
         return true;
     }
@@ -371,6 +641,25 @@ public class FTPSClientProxy implements AutoCloseable {
         return exists;
     }
 
+    /**
+     * Puts the session back in the state it had after the login, so the next borrower of a pooled connection
+     * does not inherit the working directory or the restart offset of the previous one.
+     *
+     * @return false when the login working directory could not be restored
+     */
+    public boolean resetSession() {
+        _client.setRestartOffset(0);
+        if (!_workingDirectoryChanged || _loginDirectory == null) return true;
+        try {
+            if (!_client.changeWorkingDirectory(_loginDirectory)) return false;
+            _workingDirectoryChanged = false;
+            return true;
+        } catch (IOException exp) {
+            if (_logger.isDebugEnabled()) _logger.debug("resetSession: failed to restore {}", _loginDirectory, exp);
+            return false;
+        }
+    }
+
     public boolean test() {
         return this.isOpen() &&
                 this.doTest();
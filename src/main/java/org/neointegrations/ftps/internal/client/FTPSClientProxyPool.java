@@ -0,0 +1,213 @@
+package org.neointegrations.ftps.internal.client;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.mule.runtime.api.connection.ConnectionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps logged-in {@link FTPSClientProxy} instances around so that a borrower does not have to pay the
+ * TCP connect, TLS handshake, USER/PASS, PBSZ, PROT and TYPE round trips every time.
+ * <p>
+ * Idle connections are kept in LIFO order, so the most recently used (and most likely still alive) connection
+ * is handed out first while the eviction task closes the ones which stayed idle for too long.
+ */
+public class FTPSClientProxyPool implements AutoCloseable {
+    private static final Logger _logger = LoggerFactory.getLogger(FTPSClientProxyPool.class);
+
+    private final Factory _factory;
+    private final LinkedBlockingDeque<IdleEntry> _idle = new LinkedBlockingDeque<>();
+    private final Set<FTPSClientProxy> _borrowed = ConcurrentHashMap.newKeySet();
+    private final Semaphore _permits;
+    private final int _maxIdle;
+    private final int _minIdle;
+    private final long _maxWaitMillis;
+    private final long _minEvictionMillis;
+    private final boolean _testOnBorrow;
+    private final ScheduledExecutorService _evictor;
+    private volatile boolean _closed = false;
+
+    public FTPSClientProxyPool(final FTPClientProxyFactory.Builder builder,
+                               final int maxActive,
+                               final int maxIdle,
+                               final int minIdle,
+                               final long maxWaitMillis,
+                               final long minEvictionMillis,
+                               final long evictionCheckIntervalMillis,
+                               final boolean testOnBorrow) {
+        this(Objects.isNull(builder) ? null : builder::build, maxActive, maxIdle, minIdle, maxWaitMillis,
+                minEvictionMillis, evictionCheckIntervalMillis, testOnBorrow);
+    }
+
+    FTPSClientProxyPool(final Factory factory,
+                        final int maxActive,
+                        final int maxIdle,
+                        final int minIdle,
+                        final long maxWaitMillis,
+                        final long minEvictionMillis,
+                        final long evictionCheckIntervalMillis,
+                        final boolean testOnBorrow) {
+        if (Objects.isNull(factory)) throw new NullPointerException("builder can not be null");
+        if (maxActive <= 0) throw new IllegalArgumentException("maxActive must be greater than 0");
+
+        this._factory = factory;
+        this._permits = new Semaphore(maxActive, true);
+        this._maxIdle = Math.max(0, maxIdle);
+        this._minIdle = Math.min(Math.max(0, minIdle), this._maxIdle);
+        this._maxWaitMillis = maxWaitMillis;
+        this._minEvictionMillis = minEvictionMillis;
+        this._testOnBorrow = testOnBorrow;
+
+        if (evictionCheckIntervalMillis > 0) {
+            this._evictor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                    .setNameFormat("ftps-pool-evictor-%d")
+                    .setDaemon(true)
+                    .build());
+            this._evictor.scheduleWithFixedDelay(this::evict, evictionCheckIntervalMillis,
+                    evictionCheckIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this._evictor = null;
+        }
+    }
+
+    public FTPSClientProxy borrow() throws ConnectionException {
+        if (_closed) throw new ConnectionException("Connection pool is closed");
+        acquirePermit();
+        return take();
+    }
+
+    /**
+     * Borrows a connection only when one can be had without waiting for another borrower to release theirs.
+     *
+     * @return null when every connection is in use
+     */
+    public FTPSClientProxy tryBorrow() throws ConnectionException {
+        if (_closed) throw new ConnectionException("Connection pool is closed");
+        if (!_permits.tryAcquire()) return null;
+        return take();
+    }
+
+    private FTPSClientProxy take() throws ConnectionException {
+        try {
+            IdleEntry entry;
+            while ((entry = _idle.pollFirst()) != null) {
+                if (!_testOnBorrow || entry.proxy.test()) {
+                    _borrowed.add(entry.proxy);
+                    if (_logger.isDebugEnabled()) _logger.debug("Borrowed an idle connection. idle={}", _idle.size());
+                    return entry.proxy;
+                }
+                if (_logger.isDebugEnabled()) _logger.debug("Discarding an idle connection which failed validation");
+                entry.proxy.close();
+            }
+            final FTPSClientProxy proxy = _factory.create();
+            _borrowed.add(proxy);
+            if (_logger.isDebugEnabled()) _logger.debug("Borrowed a new connection. idle={}", _idle.size());
+            return proxy;
+        } catch (ConnectionException | RuntimeException exp) {
+            _permits.release();
+            throw exp;
+        }
+    }
+
+    public void release(final FTPSClientProxy proxy) {
+        if (proxy == null || !_borrowed.remove(proxy)) return;
+        try {
+            if (_closed || !proxy.isConnected() || _idle.size() >= _maxIdle || !proxy.resetSession()) {
+                proxy.close();
+            } else {
+                _idle.offerFirst(new IdleEntry(proxy));
+            }
+        } finally {
+            _permits.release();
+        }
+        if (_logger.isDebugEnabled()) _logger.debug("Connection returned to the pool. idle={}", _idle.size());
+    }
+
+    public void invalidate(final FTPSClientProxy proxy) {
+        if (proxy == null || !_borrowed.remove(proxy)) return;
+        try {
+            proxy.close();
+        } finally {
+            _permits.release();
+        }
+    }
+
+    @Override
+    public void close() {
+        _closed = true;
+        if (_evictor != null) _evictor.shutdownNow();
+        IdleEntry entry;
+        while ((entry = _idle.pollFirst()) != null) {
+            entry.proxy.close();
+        }
+    }
+
+    private void acquirePermit() throws ConnectionException {
+        try {
+            if (_maxWaitMillis < 0) {
+                _permits.acquire();
+            } else if (!_permits.tryAcquire(_maxWaitMillis, TimeUnit.MILLISECONDS)) {
+                throw new ConnectionException("Timed out after " + _maxWaitMillis +
+                        "ms waiting for a connection from the pool");
+            }
+        } catch (InterruptedException exp) {
+            Thread.currentThread().interrupt();
+            throw new ConnectionException("Interrupted while waiting for a connection from the pool", exp);
+        }
+    }
+
+    private void evict() {
+        try {
+            final long now = System.currentTimeMillis();
+            // Oldest idle entries sit at the tail of the deque
+            final Iterator<IdleEntry> it = _idle.descendingIterator();
+            while (it.hasNext() && _idle.size() > _minIdle) {
+                IdleEntry entry = it.next();
+                if (now - entry.idleSince < _minEvictionMillis) break;
+                if (_idle.removeFirstOccurrence(entry)) {
+                    if (_logger.isDebugEnabled()) _logger.debug("Evicting an idle connection");
+                    entry.proxy.close();
+                }
+            }
+            // Idle connections hold no permit: the refill holds one while it opens a connection and only keeps
+            // going while the borrowed, idle and new connections together stay within maxActive
+            while (!_closed && _idle.size() < _minIdle && _permits.tryAcquire()) {
+                try {
+                    if (_idle.size() > _permits.availablePermits()) break;
+                    _idle.offerLast(new IdleEntry(_factory.create()));
+                } finally {
+                    _permits.release();
+                }
+            }
+        } catch (Exception exp) {
+            _logger.warn("An exception occurred while evicting idle connections {}", exp.getMessage(), exp);
+        }
+    }
+
+    /**
+     * Opens a new logged-in connection.
+     */
+    interface Factory {
+        FTPSClientProxy create() throws ConnectionException;
+    }
+
+    private static final class IdleEntry {
+        private final FTPSClientProxy proxy;
+        private final long idleSince;
+
+        private IdleEntry(final FTPSClientProxy proxy) {
+            this.proxy = proxy;
+            this.idleSince = System.currentTimeMillis();
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package org.neointegrations.ftps.internal.client;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.commons.net.ftp.FTPFile;
+import org.neointegrations.ftps.internal.FTPSConnection;
+import org.neointegrations.ftps.internal.FTPSConnectionProvider;
+import org.neointegrations.ftps.internal.WorkerConnections;
+import org.neointegrations.ftps.internal.util.FTPSUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Deletes the content of a folder tree over the caller's connection and the pooled ones which are free when it
+ * starts, at the same time.
+ * <p>
+ * Folders are listed breadth first and their files are deleted in chunks by whichever connection is free. Every
+ * folder counts the work still pending below it (its own listing, its file chunks and its sub folders), and is
+ * removed as soon as that count drops to zero, so the tree is removed bottom up without a second walk.
+ * <p>
+ * A failure does not stop the walk. Everything which could be deleted is deleted and the failures are reported
+ * at the end. The root folder itself is left in place.
+ */
+public class ParallelTreeDelete {
+    private static final Logger _logger = LoggerFactory.getLogger(ParallelTreeDelete.class);
+    private static final int FILES_PER_TASK = 64;
+    private static final int PROGRESS_EVERY = 1000;
+    private static final int MAX_REPORTED_ERRORS = 20;
+
+    private final FTPSConnectionProvider _provider;
+    private final int _concurrency;
+    private final Queue<FTPSConnection> _free = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<FTPSConnection> _connection = new ThreadLocal<>();
+    private final AtomicLong _filesDeleted = new AtomicLong();
+    private final AtomicLong _foldersDeleted = new AtomicLong();
+    private final AtomicInteger _errorCount = new AtomicInteger();
+    private final Queue<String> _errors = new ConcurrentLinkedQueue<>();
+    private WorkerConnections _workers;
+    private ExecutorService _executor;
+
+    public ParallelTreeDelete(final FTPSConnectionProvider provider, final int concurrency) {
+        this._provider = provider;
+        this._concurrency = Math.max(1, concurrency);
+    }
+
+    /**
+     * @param connection the caller's connection, it is one of the workers
+     * @throws IllegalStateException listing the first failures when anything could not be deleted
+     */
+    public void delete(final FTPSConnection connection, final String rootFolder) throws InterruptedException {
+        final long start = System.currentTimeMillis();
+        final CountDownLatch done = new CountDownLatch(1);
+        _workers = new WorkerConnections(_provider, connection, _concurrency);
+        _free.addAll(_workers.connections());
+        // One thread per connection, so every thread keeps the one it took first
+        _executor = Executors.newFixedThreadPool(_workers.size(), new ThreadFactoryBuilder()
+                .setNameFormat("ftps-rmdir-%d")
+                .setDaemon(true)
+                .build());
+        try {
+            final Folder root = new Folder(rootFolder, null, done);
+            _executor.execute(() -> scan(root));
+            done.await();
+        } finally {
+            _executor.shutdownNow();
+            _workers.close();
+        }
+
+        _logger.info("Deleted {} files and {} folders below {} in {}ms with {} errors", _filesDeleted.get(),
+                _foldersDeleted.get(), rootFolder, System.currentTimeMillis() - start, _errorCount.get());
+        if (_errorCount.get() > 0) {
+            throw new IllegalStateException("Unable to delete " + _errorCount.get() + " entries below " +
+                    rootFolder + ": " + String.join("; ", _errors));
+        }
+    }
+
+    private void scan(final Folder folder) {
+        final List<String> files = new ArrayList<>(FILES_PER_TASK);
+        try (FTPFileIterator it = connection().ftpsClient().iterateFiles(folder.path)) {
+            while (it.hasNext()) {
+                final FTPFile file = it.next();
+                if (file == null || FTPSClientProxy.isSelfOrParent(file)) continue;
+                final String path = FTPSUtil.trimPath(folder.path, file.getName());
+                if (file.isDirectory()) {
+                    final Folder child = new Folder(path, folder, null);
+                    folder.pending.incrementAndGet();
+                    _executor.execute(() -> scan(child));
+                } else {
+                    files.add(path);
+                    if (files.size() == FILES_PER_TASK) {
+                        submitFiles(folder, new ArrayList<>(files));
+                        files.clear();
+                    }
+                }
+            }
+        } catch (Exception exp) {
+            error(folder.path, exp);
+            invalidate();
+        }
+        if (!files.isEmpty()) submitFiles(folder, files);
+        folder.done();
+    }
+
+    private void submitFiles(final Folder folder, final List<String> paths) {
+        folder.pending.incrementAndGet();
+        _executor.execute(() -> {
+            for (String path : paths) {
+                try {
+                    if (connection().ftpsClient().deleteFile(path)) progress(_filesDeleted.incrementAndGet());
+                    else error(path, null);
+                } catch (Exception exp) {
+                    error(path, exp);
+                    invalidate();
+                }
+            }
+            folder.done();
+        });
+    }
+
+    private void remove(final Folder folder) {
+        try {
+            if (connection().ftpsClient().removeDirectory(folder.path)) _foldersDeleted.incrementAndGet();
+            else error(folder.path, null);
+        } catch (Exception exp) {
+            error(folder.path, exp);
+            invalidate();
+        }
+        folder.parent.done();
+    }
+
+    private FTPSConnection connection() {
+        FTPSConnection connection = _connection.get();
+        if (connection == null) {
+            connection = _free.poll();
+            if (connection == null) throw new IllegalStateException("No connection left");
+            _connection.set(connection);
+        }
+        return connection;
+    }
+
+    private void invalidate() {
+        final FTPSConnection connection = _connection.get();
+        if (connection == null) return;
+        if (!_workers.repair(connection)) _connection.remove();
+    }
+
+    private void progress(final long filesDeleted) {
+        if (filesDeleted % PROGRESS_EVERY == 0) {
+            _logger.info("{} files and {} folders deleted so far", filesDeleted, _foldersDeleted.get());
+        }
+    }
+
+    private void error(final String path, final Exception exp) {
+        if (_errorCount.incrementAndGet() <= MAX_REPORTED_ERRORS) {
+            _errors.add(path + (exp == null ? "" : " (" + exp.getMessage() + ")"));
+        }
+        _logger.warn("Unable to delete {}", path, exp);
+    }
+
+    private final class Folder {
+        private final String path;
+        private final Folder parent;
+        private final CountDownLatch done;
+        // The listing of this folder is pending from the start
+        private final AtomicInteger pending = new AtomicInteger(1);
+
+        private Folder(final String path, final Folder parent, final CountDownLatch done) {
+            this.path = path;
+            this.parent = parent;
+            this.done = done;
+        }
+
+        private void done() {
+            if (pending.decrementAndGet() != 0) return;
+            if (parent == null) done.countDown();
+            else _executor.execute(() -> remove(this));
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package org.neointegrations.ftps.internal.client;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocket;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.util.Locale;
+
+/**
+ * Publishes the TLS session of the control connection in the JDK client session cache under the data connection
+ * endpoint, so the data connection handshake resumes it (required by servers enforcing session reuse, NET-408).
+ * <p>
+ * The reflective handles into {@code SSLSessionContextImpl.sessionHostPortCache} are resolved once per JVM and
+ * session context class. The keys are built from the addresses the JDK itself uses, so no reverse DNS lookup
+ * is made. With TLS 1.3 the resumable session is the one the JDK stored for the control endpoint after the
+ * server's NewSessionTicket, not the handshake session returned by {@link SSLSocket#getSession()}, so that one
+ * is published when it exists.
+ */
+final class SSLSessionReuse {
+
+    private static final Logger _logger = LoggerFactory.getLogger(SSLSessionReuse.class);
+    private static final String TLS_V13 = "TLSv1.3";
+
+    private static final ClassValue<Handle<Field>> CACHE_FIELDS = new ClassValue<Handle<Field>>() {
+        @Override
+        protected Handle<Field> computeValue(final Class<?> type) {
+            try {
+                final Field field = type.getDeclaredField("sessionHostPortCache");
+                field.setAccessible(true);
+                return new Handle<>(field, null);
+            } catch (Exception e) {
+                return new Handle<>(null, e);
+            }
+        }
+    };
+
+    private static final ClassValue<Handle<Method[]>> CACHE_METHODS = new ClassValue<Handle<Method[]>>() {
+        @Override
+        protected Handle<Method[]> computeValue(final Class<?> type) {
+            try {
+                final Method get = type.getDeclaredMethod("get", Object.class);
+                final Method put = type.getDeclaredMethod("put", Object.class, Object.class);
+                get.setAccessible(true);
+                put.setAccessible(true);
+                return new Handle<>(new Method[]{get, put}, null);
+            } catch (Exception e) {
+                return new Handle<>(null, e);
+            }
+        }
+    };
+
+    private SSLSessionReuse() {
+    }
+
+    /**
+     * @throws InvalidSSLSessionException when the control connection session is no longer valid
+     * @throws IOException                when the session cache of this JVM can not be reached
+     */
+    static void share(final SSLSocket control, final Socket data) throws IOException {
+        final SSLSession session = control.getSession();
+        if (!session.isValid()) throw new InvalidSSLSessionException("Invalid SSL Session");
+
+        final Object cache = cacheOf(session.getSessionContext());
+        final Method[] methods = CACHE_METHODS.get(cache.getClass()).get();
+        SSLSession shared = session;
+        if (TLS_V13.equals(session.getProtocol()) && session.getPeerHost() != null) {
+            final Object resumable = invoke(methods[0], cache, key(session.getPeerHost(), session.getPeerPort()));
+            if (resumable instanceof SSLSession && ((SSLSession) resumable).isValid()) {
+                shared = (SSLSession) resumable;
+            } else if (_logger.isDebugEnabled()) {
+                _logger.debug("No TLS 1.3 ticket cached for the control connection, sharing the handshake session");
+            }
+        }
+
+        final int port = data.getPort();
+        final String address = data.getInetAddress().getHostAddress();
+        invoke(methods[1], cache, key(address, port), shared);
+        // Covers a data socket created for a host name; getHostString does not resolve the address
+        final SocketAddress remote = data.getRemoteSocketAddress();
+        if (remote instanceof InetSocketAddress) {
+            final String host = ((InetSocketAddress) remote).getHostString();
+            if (!address.equals(host)) invoke(methods[1], cache, key(host, port), shared);
+        }
+    }
+
+    static String key(final String host, final int port) {
+        return (host + ":" + port).toLowerCase(Locale.ROOT);
+    }
+
+    static Object cacheOf(final SSLSessionContext context) throws IOException {
+        try {
+            return CACHE_FIELDS.get(context.getClass()).get().get(context);
+        } catch (IllegalAccessException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static Object invoke(final Method method, final Object target, final Object... args) throws IOException {
+        try {
+            return method.invoke(target, args);
+        } catch (IllegalAccessException e) {
+            throw new IOException(e);
+        } catch (InvocationTargetException e) {
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * A resolved reflective handle, or the reason it could not be resolved so the lookup is not repeated.
+     */
+    private static final class Handle<T> {
+        private final T value;
+        private final Exception failure;
+
+        private Handle(final T value, final Exception failure) {
+            this.value = value;
+            this.failure = failure;
+        }
+
+        private T get() throws IOException {
+            if (failure != null) throw new IOException("SSL session reuse is not supported by this JVM", failure);
+            return value;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package org.neointegrations.ftps.internal.client;
+
+/**
+ * TCP options of the control and data connections. A buffer size of 0 leaves the operating system default.
+ * <p>
+ * With auto tuning the data connection buffers are sized from the bandwidth-delay product of the link: the round
+ * trip time measured on the control connection times the configured link bandwidth. The default buffers of most
+ * systems cover only a few milliseconds at 1Gbps, which caps a single transfer far below the link capacity on
+ * long distance links.
+ */
+public class SocketOptions {
+    static final int MIN_AUTO_BUFFER_SIZE = 64 * 1024;
+    static final int MAX_AUTO_BUFFER_SIZE = 16 * 1024 * 1024;
+
+    private final int _sendBufferSize;
+    private final int _receiveBufferSize;
+    private final boolean _tcpNoDelay;
+    private final boolean _keepAlive;
+    private final int _dataTimeout;
+    private final long _controlKeepAliveSeconds;
+    private final boolean _autoTune;
+    private final long _linkBandwidthMbps;
+
+    public SocketOptions(final int sendBufferSize,
+                         final int receiveBufferSize,
+                         final boolean tcpNoDelay,
+                         final boolean keepAlive,
+                         final int dataTimeout,
+                         final long controlKeepAliveSeconds,
+                         final boolean autoTune,
+                         final long linkBandwidthMbps) {
+        this._sendBufferSize = Math.max(0, sendBufferSize);
+        this._receiveBufferSize = Math.max(0, receiveBufferSize);
+        this._tcpNoDelay = tcpNoDelay;
+        this._keepAlive = keepAlive;
+        this._dataTimeout = dataTimeout;
+        this._controlKeepAliveSeconds = Math.max(0, controlKeepAliveSeconds);
+        this._autoTune = autoTune;
+        this._linkBandwidthMbps = Math.max(1, linkBandwidthMbps);
+    }
+
+    /**
+     * The JVM defaults, as before these options existed.
+     */
+    public static SocketOptions defaults() {
+        return new SocketOptions(0, 0, false, false, 0, 0, false, 1000);
+    }
+
+    public int getSendBufferSize() {
+        return _sendBufferSize;
+    }
+
+    public int getReceiveBufferSize() {
+        return _receiveBufferSize;
+    }
+
+    public boolean isTcpNoDelay() {
+        return _tcpNoDelay;
+    }
+
+    public boolean isKeepAlive() {
+        return _keepAlive;
+    }
+
+    public int getDataTimeout() {
+        return _dataTimeout;
+    }
+
+    public long getControlKeepAliveSeconds() {
+        return _controlKeepAliveSeconds;
+    }
+
+    public boolean isAutoTune() {
+        return _autoTune;
+    }
+
+    /**
+     * Bandwidth-delay product for the given round trip time, doubled to leave room for the congestion window to
+     * grow, and kept between 64KB and 16MB.
+     */
+    public int bufferSizeFor(final double rttMillis) {
+        final double bytesPerMilli = _linkBandwidthMbps * 1_000_000d / 8d / 1000d;
+        final double size = 2d * bytesPerMilli * Math.max(0d, rttMillis);
+        return (int) Math.min(MAX_AUTO_BUFFER_SIZE, Math.max(MIN_AUTO_BUFFER_SIZE, size));
+    }
+
+    @Override
+    public String toString() {
+        return "SocketOptions{sendBufferSize=" + _sendBufferSize + ", receiveBufferSize=" + _receiveBufferSize +
+                ", tcpNoDelay=" + _tcpNoDelay + ", keepAlive=" + _keepAlive + ", dataTimeout=" + _dataTimeout +
+                ", controlKeepAliveSeconds=" + _controlKeepAliveSeconds + ", autoTune=" + _autoTune +
+                ", linkBandwidthMbps=" + _linkBandwidthMbps + '}';
+    }
+}
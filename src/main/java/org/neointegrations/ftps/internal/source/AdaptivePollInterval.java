@@ -0,0 +1,51 @@
+package org.neointegrations.ftps.internal.source;
+
+/**
+ * Decides whether a scheduler tick should actually list the folder. The interval doubles after every poll which
+ * found nothing to do, up to {@code maxMillis}, and drops back to {@code minMillis} as soon as a poll finds new
+ * files, so an idle folder is listed less and less often while a burst is drained without waiting for the
+ * backed off interval.
+ * <p>
+ * The scheduler still ticks at its configured frequency, which is therefore the shortest possible interval.
+ */
+public class AdaptivePollInterval {
+    private static final long FIRST_BACKOFF_MILLIS = 1000;
+
+    private final long _minMillis;
+    private final long _maxMillis;
+    private long _intervalMillis;
+    private long _nextPollAt = 0;
+
+    public AdaptivePollInterval(final long minMillis, final long maxMillis) {
+        if (maxMillis < minMillis) throw new IllegalArgumentException("maxMillis must not be less than minMillis");
+        this._minMillis = Math.max(0, minMillis);
+        this._maxMillis = maxMillis;
+        this._intervalMillis = this._minMillis;
+    }
+
+    public synchronized boolean isDue(final long now) {
+        return now >= _nextPollAt;
+    }
+
+    /**
+     * @param active whether the poll found new files, dispatched or still settling
+     */
+    public synchronized void polled(final boolean active, final long now) {
+        if (active) {
+            _intervalMillis = _minMillis;
+        } else {
+            // Doubling from 0 would never leave it
+            _intervalMillis = Math.min(_maxMillis, Math.max(_intervalMillis * 2, FIRST_BACKOFF_MILLIS));
+        }
+        _nextPollAt = now + _intervalMillis;
+    }
+
+    public synchronized long intervalMillis() {
+        return _intervalMillis;
+    }
+
+    public synchronized void reset() {
+        _intervalMillis = _minMillis;
+        _nextPollAt = 0;
+    }
+}
@@ -0,0 +1,94 @@
+package org.neointegrations.ftps.internal.source;
+
+import org.mule.runtime.api.store.ObjectStore;
+import org.mule.runtime.api.store.ObjectStoreException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Splits the files of a folder between the cluster nodes running the same listener. Every node records a
+ * heartbeat in a shared {@link ObjectStore} on each poll, the nodes whose heartbeat is recent enough are placed on
+ * a {@link ConsistentHashRing} and a node only dispatches the paths the ring hands to it.
+ * <p>
+ * Membership is re-read on every poll, so the ring is rebuilt as soon as a node joins, stops or stops
+ * heartbeating, and only the files of that node move to the others.
+ */
+public class ClusterShard {
+    private static final Logger _logger = LoggerFactory.getLogger(ClusterShard.class);
+    private static final int VIRTUAL_NODES = 128;
+
+    private final ObjectStore<Long> _store;
+    private final String _nodeId;
+    private final long _nodeTimeoutMillis;
+    private volatile ConsistentHashRing _ring;
+    private volatile int _generation = 0;
+
+    public ClusterShard(final ObjectStore<Long> store, final String nodeId, final long nodeTimeoutMillis) {
+        if (nodeTimeoutMillis <= 0) throw new IllegalArgumentException("nodeTimeoutMillis must be greater than 0");
+        this._store = store;
+        this._nodeId = nodeId;
+        this._nodeTimeoutMillis = nodeTimeoutMillis;
+        this._ring = new ConsistentHashRing(Collections.singleton(nodeId), VIRTUAL_NODES);
+    }
+
+    /**
+     * Records this node's heartbeat and rebuilds the ring when the live members changed. When the store can not
+     * be reached the previous ring is kept.
+     */
+    public void heartbeat(final long now) {
+        try {
+            if (_store.contains(_nodeId)) _store.remove(_nodeId);
+            _store.store(_nodeId, now);
+
+            final Set<String> members = new TreeSet<>();
+            for (Map.Entry<String, Long> entry : _store.retrieveAll().entrySet()) {
+                if (now - entry.getValue() <= _nodeTimeoutMillis) {
+                    members.add(entry.getKey());
+                } else {
+                    // Left without saying goodbye
+                    _store.remove(entry.getKey());
+                }
+            }
+            members.add(_nodeId);
+            if (!members.equals(_ring.members())) {
+                _logger.info("Cluster members of the listener changed from {} to {}, rebalancing",
+                        _ring.members().size(), members.size());
+                _ring = new ConsistentHashRing(members, VIRTUAL_NODES);
+                _generation++;
+            }
+        } catch (ObjectStoreException exp) {
+            _logger.warn("Unable to refresh the cluster members of the listener {}", exp.getMessage(), exp);
+        }
+    }
+
+    public boolean owns(final String path) {
+        return _nodeId.equals(_ring.ownerOf(path));
+    }
+
+    /**
+     * @return a number which changes every time the ring is rebuilt
+     */
+    public int generation() {
+        return _generation;
+    }
+
+    public int members() {
+        return _ring.members().size();
+    }
+
+    /**
+     * Takes this node off the ring, so the others pick its share on their next poll.
+     */
+    public void leave() {
+        try {
+            if (_store.contains(_nodeId)) _store.remove(_nodeId);
+        } catch (ObjectStoreException exp) {
+            _logger.warn("Unable to remove the node from the listener members {}", exp.getMessage(), exp);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package org.neointegrations.ftps.internal.source;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Maps keys to members so that every member owns about the same share of the keys and a change of members only
+ * moves the keys of the member which joined or left. Each member is placed on the ring many times (virtual nodes)
+ * to even out the shares.
+ */
+public class ConsistentHashRing {
+    private static final HashFunction HASH = Hashing.murmur3_128();
+
+    private final NavigableMap<Long, String> _ring = new TreeMap<>();
+    private final Set<String> _members;
+
+    public ConsistentHashRing(final Collection<String> members, final int virtualNodes) {
+        if (virtualNodes <= 0) throw new IllegalArgumentException("virtualNodes must be greater than 0");
+        this._members = Collections.unmodifiableSet(new TreeSet<>(members));
+        for (String member : _members) {
+            for (int idx = 0; idx < virtualNodes; idx++) {
+                _ring.put(hash(member + "#" + idx), member);
+            }
+        }
+    }
+
+    /**
+     * @return the member owning the key, null when the ring has no members
+     */
+    public String ownerOf(final String key) {
+        if (_ring.isEmpty()) return null;
+        final Map.Entry<Long, String> entry = _ring.ceilingEntry(hash(key));
+        return entry != null ? entry.getValue() : _ring.firstEntry().getValue();
+    }
+
+    public Set<String> members() {
+        return _members;
+    }
+
+    private static long hash(final String value) {
+        return HASH.hashString(value, StandardCharsets.UTF_8).asLong();
+    }
+}
@@ -0,0 +1,86 @@
+package org.neointegrations.ftps.internal.source;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Groups files into batches of at most {@code maxFiles} files and {@code maxBytes} bytes. A file bigger than the
+ * byte budget gets a batch of its own. Files which do not fill a batch stay pending across polls until the
+ * oldest of them waited {@code maxWaitMillis}; with no wait the remainder is emitted straight away.
+ */
+public class FileBatcher<T> {
+
+    private final int _maxFiles;
+    private final long _maxBytes;
+    private final long _maxWaitMillis;
+    private final Deque<Entry<T>> _pending = new ArrayDeque<>();
+
+    public FileBatcher(final int maxFiles, final long maxBytes, final long maxWaitMillis) {
+        if (maxFiles <= 0) throw new IllegalArgumentException("maxFiles must be greater than 0");
+        this._maxFiles = maxFiles;
+        this._maxBytes = maxBytes > 0 ? maxBytes : Long.MAX_VALUE;
+        this._maxWaitMillis = Math.max(0, maxWaitMillis);
+    }
+
+    public synchronized void add(final T item, final long size, final long now) {
+        _pending.addLast(new Entry<>(item, Math.max(0, size), now));
+    }
+
+    /**
+     * Takes the full batches and, once the oldest pending file waited long enough, the partial one.
+     */
+    public synchronized List<List<T>> takeReady(final long now) {
+        final List<List<T>> batches = new ArrayList<>();
+        List<T> batch = new ArrayList<>();
+        Entry<T> first = null;
+        long bytes = 0;
+        int taken = 0;
+        for (Entry<T> entry : _pending) {
+            if (!batch.isEmpty() && (batch.size() >= _maxFiles || bytes + entry.size > _maxBytes)) {
+                batches.add(batch);
+                taken += batch.size();
+                batch = new ArrayList<>();
+                bytes = 0;
+            }
+            if (batch.isEmpty()) first = entry;
+            batch.add(entry.item);
+            bytes += entry.size;
+        }
+        // The first file of the partial batch is the oldest one still pending
+        if (!batch.isEmpty() && (batch.size() >= _maxFiles || bytes >= _maxBytes ||
+                now - first.addedAt >= _maxWaitMillis)) {
+            batches.add(batch);
+            taken += batch.size();
+        }
+        for (int i = 0; i < taken; i++) _pending.pollFirst();
+        return batches;
+    }
+
+    /**
+     * Takes every pending file, for example to give them back when the source stops.
+     */
+    public synchronized List<T> takeAll() {
+        final List<T> items = new ArrayList<>(_pending.size());
+        for (Entry<T> entry : _pending) items.add(entry.item);
+        _pending.clear();
+        return items;
+    }
+
+    public synchronized int pending() {
+        return _pending.size();
+    }
+
+    private static final class Entry<T> {
+        private final T item;
+        private final long size;
+        private final long addedAt;
+
+        private Entry(final T item, final long size, final long addedAt) {
+            this.item = item;
+            this.size = size;
+            this.addedAt = addedAt;
+        }
+    }
+}
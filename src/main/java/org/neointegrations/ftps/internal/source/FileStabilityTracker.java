@@ -0,0 +1,85 @@
+package org.neointegrations.ftps.internal.source;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers the size and modification time of every listed file between polls, so a file which is still being
+ * written can be told apart from a complete one without sleeping and listing the folder twice.
+ * <p>
+ * A file is considered stable once it has been seen unchanged on {@code minObservations} consecutive polls spanning at
+ * least {@code minStableMillis}, or when its modification time is older than {@code minAgeMillis} (if set).
+ * Entries for files which disappeared from the listing are dropped at the end of each poll.
+ */
+public class FileStabilityTracker {
+
+    private final Map<String, Observation> _observations = new ConcurrentHashMap<>();
+    private final int _minObservations;
+    private final long _minStableMillis;
+    private final long _minAgeMillis;
+    private long _generation = 0;
+    private int _changed = 0;
+
+    public FileStabilityTracker(final int minObservations,
+                                final long minStableMillis,
+                                final long minAgeMillis) {
+        this._minObservations = Math.max(1, minObservations);
+        this._minStableMillis = Math.max(0, minStableMillis);
+        this._minAgeMillis = minAgeMillis;
+    }
+
+    public synchronized void beginPoll() {
+        _generation++;
+        _changed = 0;
+    }
+
+    public synchronized boolean isStable(final String path, final long size, final long modifiedMillis, final long now) {
+        Observation observation = _observations.get(path);
+        if (observation == null || observation.size != size || observation.modifiedMillis != modifiedMillis) {
+            observation = new Observation(size, modifiedMillis, now);
+            _observations.put(path, observation);
+            _changed++;
+        } else if (observation.generation != _generation) {
+            observation.count++;
+        }
+        observation.generation = _generation;
+
+        // Empty files are never picked, the writer may not have started yet
+        if (size <= 0) return false;
+        if (_minAgeMillis > 0 && modifiedMillis > 0 && now - modifiedMillis >= _minAgeMillis) return true;
+        return observation.count >= _minObservations && now - observation.since >= _minStableMillis;
+    }
+
+    /**
+     * @return the number of files of the current poll which were not listed before, or changed since the last poll
+     */
+    public synchronized int changed() {
+        return _changed;
+    }
+
+    public synchronized void endPoll() {
+        _observations.values().removeIf(observation -> observation.generation != _generation);
+    }
+
+    public void clear() {
+        _observations.clear();
+    }
+
+    public int size() {
+        return _observations.size();
+    }
+
+    private static final class Observation {
+        private final long size;
+        private final long modifiedMillis;
+        private final long since;
+        private int count = 1;
+        private long generation;
+
+        private Observation(final long size, final long modifiedMillis, final long since) {
+            this.size = size;
+            this.modifiedMillis = modifiedMillis;
+            this.since = since;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package org.neointegrations.ftps.internal.source;
+
+import org.mule.runtime.api.store.ObjectAlreadyExistsException;
+import org.mule.runtime.api.store.ObjectStore;
+import org.mule.runtime.api.store.ObjectStoreException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The files the listener dispatched which are still being processed, so a later poll does not dispatch (and
+ * download) the same file again while a slow flow still works on it. A file is identified by its path, size and
+ * modification time, so a file which was replaced in the meantime is treated as a new one.
+ * <p>
+ * Claims are made in a local map first. When a shared {@link ObjectStore} is given, the claim is also stored
+ * there so that other nodes polling the same folder skip the file too; the store is expected to expire the
+ * entries of a node which died before releasing them.
+ */
+public class InFlightRegistry {
+    private static final Logger _logger = LoggerFactory.getLogger(InFlightRegistry.class);
+
+    private final ConcurrentMap<String, Boolean> _local = new ConcurrentHashMap<>();
+    private final ObjectStore<Long> _shared;
+
+    public InFlightRegistry(final ObjectStore<Long> shared) {
+        this._shared = shared;
+    }
+
+    public static String keyOf(final String path, final long size, final long modifiedMillis) {
+        return path + "|" + size + "|" + modifiedMillis;
+    }
+
+    /**
+     * @return false when the file is already being processed, here or on another node
+     */
+    public boolean claim(final String key) {
+        if (_local.putIfAbsent(key, Boolean.TRUE) != null) return false;
+        if (_shared == null) return true;
+        try {
+            if (!_shared.contains(key)) {
+                _shared.store(key, System.currentTimeMillis());
+                return true;
+            }
+        } catch (ObjectAlreadyExistsException exp) {
+            // Another node claimed it in between
+        } catch (ObjectStoreException exp) {
+            // Better to risk a duplicate than to stop picking files while the store is unavailable
+            _logger.warn("Unable to claim {} in the shared in-flight registry {}", key, exp.getMessage(), exp);
+            return true;
+        }
+        _local.remove(key);
+        if (_logger.isDebugEnabled()) _logger.debug("{} is being processed by another node", key);
+        return false;
+    }
+
+    /**
+     * Releases a claim. Releasing a key which is not claimed does nothing, so every completion callback can call it.
+     */
+    public void release(final String key) {
+        if (_local.remove(key) == null || _shared == null) return;
+        try {
+            if (_shared.contains(key)) _shared.remove(key);
+        } catch (ObjectStoreException exp) {
+            _logger.warn("Unable to release {} in the shared in-flight registry {}", key, exp.getMessage(), exp);
+        }
+    }
+
+    public boolean isInFlight(final String key) {
+        return _local.containsKey(key);
+    }
+
+    public int size() {
+        return _local.size();
+    }
+}
@@ -0,0 +1,123 @@
+package org.neointegrations.ftps.internal.source;
+
+import org.mule.runtime.api.store.ObjectStore;
+import org.mule.runtime.api.store.ObjectStoreException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Serializable;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The size and modification time of every file the listener has already dispatched, kept in an
+ * {@link ObjectStore} so it survives restarts. Each poll is compared with it and only new or updated files are
+ * dispatched. A copy is kept in memory so that the store is only touched for the files which actually changed.
+ * <p>
+ * Entries of files which are no longer in the listing are compacted away at the end of a complete poll.
+ */
+public class ListingSnapshot {
+    private static final Logger _logger = LoggerFactory.getLogger(ListingSnapshot.class);
+
+    private final ObjectStore<Entry> _store;
+    private final Map<String, Entry> _entries = new ConcurrentHashMap<>();
+    private final Set<String> _seen = ConcurrentHashMap.newKeySet();
+
+    public ListingSnapshot(final ObjectStore<Entry> store) throws ObjectStoreException {
+        this._store = store;
+        this._entries.putAll(store.retrieveAll());
+        if (_logger.isDebugEnabled()) _logger.debug("Loaded {} snapshot entries", _entries.size());
+    }
+
+    public void beginPoll() {
+        _seen.clear();
+    }
+
+    /**
+     * Keeps the entry of a listed file through {@link #compact()}, also when this node does not look at it
+     * (another cluster node owns it, or it is waiting for its post action).
+     */
+    public void seen(final String path) {
+        _seen.add(path);
+    }
+
+    public boolean isNewOrUpdated(final String path, final long size, final long modifiedMillis) {
+        _seen.add(path);
+        final Entry entry = _entries.get(path);
+        return entry == null || entry.size != size || entry.modifiedMillis != modifiedMillis;
+    }
+
+    /**
+     * Reads the store again, for the entries other cluster nodes recorded for the files this node owns now.
+     */
+    public synchronized void reload() throws ObjectStoreException {
+        final Map<String, Entry> stored = _store.retrieveAll();
+        _entries.keySet().retainAll(stored.keySet());
+        _entries.putAll(stored);
+        if (_logger.isDebugEnabled()) _logger.debug("Reloaded {} snapshot entries", _entries.size());
+    }
+
+    public synchronized void record(final String path, final long size, final long modifiedMillis) {
+        final Entry entry = new Entry(size, modifiedMillis);
+        _entries.put(path, entry);
+        try {
+            if (_store.contains(path)) _store.remove(path);
+            _store.store(path, entry);
+        } catch (ObjectStoreException exp) {
+            _logger.warn("Unable to store the snapshot entry of {} {}", path, exp.getMessage(), exp);
+        }
+    }
+
+    public void forget(final String path) {
+        if (_entries.remove(path) == null) return;
+        try {
+            if (_store.contains(path)) _store.remove(path);
+        } catch (ObjectStoreException exp) {
+            _logger.warn("Unable to remove the snapshot entry of {} {}", path, exp.getMessage(), exp);
+        }
+    }
+
+    /**
+     * Drops the entries of files which were not in this poll's listing. Only call it when the whole listing
+     * has been walked, otherwise files which were simply not reached would be dispatched again.
+     */
+    public void compact() {
+        final Iterator<String> it = _entries.keySet().iterator();
+        while (it.hasNext()) {
+            final String path = it.next();
+            if (_seen.contains(path)) continue;
+            it.remove();
+            try {
+                if (_store.contains(path)) _store.remove(path);
+            } catch (ObjectStoreException exp) {
+                _logger.warn("Unable to compact the snapshot entry of {} {}", path, exp.getMessage(), exp);
+            }
+        }
+    }
+
+    public int size() {
+        return _entries.size();
+    }
+
+    public static final class Entry implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final long size;
+        private final long modifiedMillis;
+
+        public Entry(final long size, final long modifiedMillis) {
+            this.size = size;
+            this.modifiedMillis = modifiedMillis;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getModifiedMillis() {
+            return modifiedMillis;
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package org.neointegrations.ftps.internal.source;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.mule.runtime.api.connection.ConnectionException;
+import org.mule.runtime.api.connection.ConnectionProvider;
+import org.neointegrations.ftps.internal.FTPSConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applies the listener's post processing actions (delete, rename, move) in the background, in batches, over one
+ * long lived connection, so the flow's completion thread does not pay a TLS login for every file.
+ * <p>
+ * Failed actions are retried with a new connection up to the configured number of attempts. When the queue is
+ * full the actions are applied on the caller's thread, as they were before. The paths with a pending action are
+ * exposed so that the next poll does not dispatch a file again before it was moved away.
+ */
+public class PostActionQueue {
+    private static final Logger _logger = LoggerFactory.getLogger(PostActionQueue.class);
+    private static final long IDLE_MILLIS = 1000;
+
+    private final ConnectionProvider<FTPSConnection> _provider;
+    private final BlockingQueue<Task> _queue;
+    private final Set<String> _pending = ConcurrentHashMap.newKeySet();
+    private final int _batchSize;
+    private final int _maxAttempts;
+    private final long _retryBackoffMillis;
+    private final Thread _worker;
+    private volatile boolean _running = true;
+    private FTPSConnection _connection = null;
+
+    public PostActionQueue(final ConnectionProvider<FTPSConnection> provider,
+                           final int capacity,
+                           final int batchSize,
+                           final int maxAttempts,
+                           final long retryBackoffMillis) {
+        this._provider = provider;
+        this._queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        this._batchSize = Math.max(1, batchSize);
+        this._maxAttempts = Math.max(1, maxAttempts);
+        this._retryBackoffMillis = Math.max(0, retryBackoffMillis);
+        final ThreadFactory factory = new ThreadFactoryBuilder()
+                .setNameFormat("ftps-post-action-%d")
+                .setDaemon(true)
+                .build();
+        this._worker = factory.newThread(this::drain);
+        this._worker.start();
+    }
+
+    /**
+     * Queues the actions of one file, or applies them straight away when the queue is full or stopped.
+     */
+    public void submit(final String path, final List<Step> steps) {
+        if (steps.isEmpty()) return;
+        final Task task = new Task(path, steps);
+        _pending.add(path);
+        if (_running && _queue.offer(task)) return;
+
+        _logger.warn("The post action queue is full, applying the actions of {} on the caller's thread", path);
+        try {
+            applyNow(_provider, path, steps);
+        } finally {
+            _pending.remove(path);
+        }
+    }
+
+    public boolean isPending(final String path) {
+        return _pending.contains(path);
+    }
+
+    public int size() {
+        return _queue.size();
+    }
+
+    /**
+     * Stops taking new actions and waits up to {@code timeoutMillis} for the queued ones to be applied.
+     */
+    public void stop(final long timeoutMillis) {
+        _running = false;
+        try {
+            _worker.join(timeoutMillis);
+        } catch (InterruptedException exp) {
+            Thread.currentThread().interrupt();
+        }
+        if (_worker.isAlive()) {
+            _logger.warn("{} post actions were not applied before the listener stopped", _queue.size());
+            _worker.interrupt();
+        }
+    }
+
+    /**
+     * Applies the actions of one file over a connection of its own.
+     */
+    public static void applyNow(final ConnectionProvider<FTPSConnection> provider,
+                                final String path,
+                                final List<Step> steps) {
+        FTPSConnection connection = null;
+        try {
+            connection = provider.connect();
+            for (Step step : steps) step.apply(connection);
+        } catch (ConnectionException | IOException e) {
+            _logger.error("An error occurred while retrieving a connection to apply the post processing action to the file {}, it was neither moved nor deleted.",
+                    path, e);
+        } finally {
+            if (connection != null) {
+                connection.close();
+            }
+        }
+    }
+
+    private void drain() {
+        final List<Task> batch = new ArrayList<>(_batchSize);
+        try {
+            while (_running || !_queue.isEmpty()) {
+                final Task first = _queue.poll(IDLE_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    // Nothing to do, give the connection back to the pool
+                    releaseConnection();
+                    continue;
+                }
+                batch.add(first);
+                _queue.drainTo(batch, _batchSize - 1);
+                if (_logger.isDebugEnabled()) _logger.debug("Applying post actions of {} files", batch.size());
+                for (Task task : batch) apply(task);
+                batch.clear();
+            }
+        } catch (InterruptedException exp) {
+            Thread.currentThread().interrupt();
+        } finally {
+            releaseConnection();
+        }
+    }
+
+    private void apply(final Task task) throws InterruptedException {
+        while (true) {
+            try {
+                if (_connection == null) _connection = _provider.connect();
+                while (task.next < task.steps.size()) {
+                    task.steps.get(task.next).apply(_connection);
+                    task.next++;
+                }
+                _pending.remove(task.path);
+                return;
+            } catch (ConnectionException | IOException | RuntimeException exp) {
+                invalidateConnection();
+                if (++task.attempts >= _maxAttempts) {
+                    _pending.remove(task.path);
+                    _logger.error("An error occurred while applying the post processing action to the file {}, it was neither moved nor deleted.",
+                            task.path, exp);
+                    return;
+                }
+                _logger.warn("Unable to apply the post processing action to the file {}, retrying (attempt {}) {}",
+                        task.path, task.attempts, exp.getMessage());
+                Thread.sleep(_retryBackoffMillis << Math.min(task.attempts - 1, 16));
+            }
+        }
+    }
+
+    private void releaseConnection() {
+        if (_connection == null) return;
+        _connection.close();
+        _connection = null;
+    }
+
+    private void invalidateConnection() {
+        if (_connection == null) return;
+        _connection.getProvider().invalidate(_connection);
+        _connection = null;
+    }
+
+    /**
+     * One action applied to a file, either a delete or a rename (which also moves it).
+     */
+    public static final class Step {
+        private final String _source;
+        private final String _target;
+
+        private Step(final String source, final String target) {
+            this._source = source;
+            this._target = target;
+        }
+
+        public static Step delete(final String path) {
+            return new Step(path, null);
+        }
+
+        public static Step rename(final String source, final String target) {
+            return new Step(source, target);
+        }
+
+        /**
+         * @throws IOException also when the server refused the action, so it is retried and reported like a failure
+         */
+        void apply(final FTPSConnection connection) throws IOException, ConnectionException {
+            if (_target == null) {
+                if (!connection.ftpsClient().deleteFile(_source)) {
+                    throw new IOException("Unable to delete " + _source + ": " + connection.ftpsClient().getReplyString());
+                }
+            } else if (!connection.ftpsClient().rename(_source, _target)) {
+                throw new IOException("Unable to rename " + _source + " to " + _target + ": " +
+                        connection.ftpsClient().getReplyString());
+            }
+        }
+    }
+
+    private static final class Task {
+        private final String path;
+        private final List<Step> steps;
+        private int next = 0;
+        private int attempts = 0;
+
+        private Task(final String path, final List<Step> steps) {
+            this.path = path;
+            this.steps = Collections.unmodifiableList(new ArrayList<>(steps));
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package org.neointegrations.ftps.internal.source;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.neointegrations.ftps.internal.stream.LazyInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Downloads the files the listener is about to dispatch ahead of time, so that a flow finds its file already
+ * local instead of paying the connect, handshake and transfer latency after it was dispatched.
+ * <p>
+ * At most {@code depth} files are downloaded at the same time and the prefetched files which were not closed yet
+ * never take more than {@code budgetInBytes} in total. A file which does not fit in the budget is simply read on
+ * demand, as without prefetching.
+ */
+public class Prefetcher {
+    private static final Logger _logger = LoggerFactory.getLogger(Prefetcher.class);
+
+    private final int _depth;
+    private final long _budgetInBytes;
+    private final int _inMemoryThresholdInBytes;
+    private final AtomicLong _reserved = new AtomicLong();
+    private final ExecutorService _executor;
+
+    public Prefetcher(final int depth, final long budgetInBytes, final int inMemoryThresholdInBytes) {
+        this._depth = Math.max(1, depth);
+        this._budgetInBytes = budgetInBytes;
+        this._inMemoryThresholdInBytes = inMemoryThresholdInBytes;
+        this._executor = Executors.newFixedThreadPool(_depth, new ThreadFactoryBuilder()
+                .setNameFormat("ftps-prefetch-%d")
+                .setDaemon(true)
+                .build());
+    }
+
+    public int depth() {
+        return _depth;
+    }
+
+    /**
+     * Starts downloading the file in the background when it fits in the remaining budget.
+     */
+    public void prefetch(final LazyInputStream stream, final long size) {
+        if (size <= 0 || !reserve(size)) {
+            if (_logger.isDebugEnabled()) _logger.debug("Not prefetching a file of {} bytes, {} bytes in use", size, _reserved.get());
+            return;
+        }
+        try {
+            _executor.execute(() -> {
+                if (!stream.prefetch(_inMemoryThresholdInBytes, () -> release(size))) release(size);
+            });
+        } catch (RejectedExecutionException exp) {
+            release(size);
+        }
+    }
+
+    public long reserved() {
+        return _reserved.get();
+    }
+
+    public void stop() {
+        _executor.shutdownNow();
+    }
+
+    private boolean reserve(final long size) {
+        while (true) {
+            final long current = _reserved.get();
+            if (current + size > _budgetInBytes) return false;
+            if (_reserved.compareAndSet(current, current + size)) return true;
+        }
+    }
+
+    private void release(final long size) {
+        _reserved.addAndGet(-size);
+    }
+}
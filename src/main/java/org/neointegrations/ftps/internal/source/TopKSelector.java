@@ -0,0 +1,69 @@
+package org.neointegrations.ftps.internal.source;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.ToLongFunction;
+
+/**
+ * Picks, out of a stream of items, the first ones in a given order up to {@code maxItems} items and
+ * {@code maxBytes} bytes, without holding or sorting more than the selection. The items are kept in a heap with
+ * the worst one on top, which is dropped as soon as the better ones fill the limits on their own.
+ * <p>
+ * The byte budget may be overshot by the last item picked, so an item bigger than the budget is still picked
+ * when it comes first.
+ */
+public class TopKSelector<T> {
+
+    private final Comparator<? super T> _order;
+    private final int _maxItems;
+    private final long _maxBytes;
+    private final ToLongFunction<? super T> _sizeOf;
+    private final PriorityQueue<T> _heap;
+    private long _bytes = 0;
+
+    /**
+     * @param maxItems 0 for no limit
+     * @param maxBytes 0 for no limit
+     */
+    public TopKSelector(final Comparator<? super T> order, final int maxItems, final long maxBytes,
+                        final ToLongFunction<? super T> sizeOf) {
+        this._order = order;
+        this._maxItems = maxItems > 0 ? maxItems : Integer.MAX_VALUE;
+        this._maxBytes = maxBytes > 0 ? maxBytes : Long.MAX_VALUE;
+        this._sizeOf = sizeOf;
+        this._heap = new PriorityQueue<>(Collections.reverseOrder(order));
+    }
+
+    /**
+     * @return the item which fell out of the selection, null when none did
+     */
+    public T offer(final T item) {
+        _heap.add(item);
+        _bytes += _sizeOf.applyAsLong(item);
+        T dropped = null;
+        while (_heap.size() > _maxItems ||
+                (_heap.size() > 1 && _bytes - _sizeOf.applyAsLong(_heap.peek()) >= _maxBytes)) {
+            dropped = _heap.poll();
+            _bytes -= _sizeOf.applyAsLong(dropped);
+        }
+        return dropped;
+    }
+
+    /**
+     * @return the selected items in order, the selector is empty afterwards
+     */
+    public List<T> take() {
+        final List<T> selected = new ArrayList<>(_heap);
+        selected.sort(_order);
+        _heap.clear();
+        _bytes = 0;
+        return selected;
+    }
+
+    public int size() {
+        return _heap.size();
+    }
+}
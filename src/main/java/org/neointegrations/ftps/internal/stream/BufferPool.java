@@ -0,0 +1,45 @@
+package org.neointegrations.ftps.internal.stream;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reusable read buffers, so that streaming many files does not allocate (and garbage collect) a fresh buffer of
+ * {@code bufferSizeInBytes} for each one of them. A limited number of buffers is kept per size.
+ */
+public final class BufferPool {
+    private static final int MAX_POOLED_PER_SIZE = 64;
+    private static final Map<Integer, Pool> _pools_ = new ConcurrentHashMap<>();
+
+    private BufferPool() {
+    }
+
+    public static byte[] acquire(final int size) {
+        final byte[] buffer = pool(size).buffers.poll();
+        if (buffer == null) return new byte[size];
+        pool(size).count.decrementAndGet();
+        return buffer;
+    }
+
+    public static void release(final byte[] buffer) {
+        if (buffer == null) return;
+        final Pool pool = pool(buffer.length);
+        if (pool.count.incrementAndGet() > MAX_POOLED_PER_SIZE) {
+            pool.count.decrementAndGet();
+            return;
+        }
+        pool.buffers.offer(buffer);
+    }
+
+    private static Pool pool(final int size) {
+        return _pools_.computeIfAbsent(size, s -> new Pool());
+    }
+
+    private static final class Pool {
+        private final Queue<byte[]> buffers = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger count = new AtomicInteger();
+    }
+}
@@ -0,0 +1,181 @@
+package org.neointegrations.ftps.internal.stream;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.commons.net.ftp.FTPFile;
+import org.mule.runtime.extension.api.runtime.operation.Result;
+import org.neointegrations.ftps.api.FTPSFileStatus;
+import org.neointegrations.ftps.internal.FTPSConnection;
+import org.neointegrations.ftps.internal.FTPSConnectionProvider;
+import org.neointegrations.ftps.internal.WorkerConnections;
+import org.neointegrations.ftps.internal.util.FTPSUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Fetches several files of a folder at the same time into local spool files, over the caller's connection and the
+ * pooled ones which are free when the batch starts. The whole batch takes about as long as its slowest file instead of the sum of all of them.
+ * <p>
+ * The results keep the order of the requested names. A file which could not be read is reported with a failed
+ * {@link FTPSFileStatus} and no content, the other files are not affected.
+ */
+public class BulkDownload {
+    private static final Logger _logger = LoggerFactory.getLogger(BulkDownload.class);
+
+    private final FTPSConnectionProvider _provider;
+    private final String _sourceFolder;
+    private final int _concurrency;
+    private final boolean _deleteFileAfterRead;
+    private final int _bufferSizeInBytes;
+
+    public BulkDownload(final FTPSConnectionProvider provider,
+                        final String sourceFolder,
+                        final int concurrency,
+                        final boolean deleteFileAfterRead) {
+        this._provider = provider;
+        this._sourceFolder = sourceFolder;
+        this._concurrency = Math.max(1, concurrency);
+        this._deleteFileAfterRead = deleteFileAfterRead;
+        this._bufferSizeInBytes = Math.max(8192, provider.getBufferSizeInBytes());
+    }
+
+    /**
+     * @param connection the caller's connection, it reads files too
+     */
+    public List<Result<InputStream, FTPSFileStatus>> download(final FTPSConnection connection,
+                                                              final List<String> fileNames) {
+        final List<Result<InputStream, FTPSFileStatus>> results = new ArrayList<>(fileNames.size());
+        if (fileNames.isEmpty()) return results;
+
+        final AtomicReferenceArray<Result<InputStream, FTPSFileStatus>> fetched =
+                new AtomicReferenceArray<>(fileNames.size());
+        final WorkerConnections workers = new WorkerConnections(_provider, connection,
+                Math.min(_concurrency, fileNames.size()));
+        final ExecutorService executor = Executors.newFixedThreadPool(workers.size(),
+                new ThreadFactoryBuilder()
+                        .setNameFormat("ftps-read-many-%d")
+                        .setDaemon(true)
+                        .build());
+        try {
+            final AtomicInteger next = new AtomicInteger();
+            final List<Future<?>> running = new ArrayList<>(workers.size());
+            for (FTPSConnection worker : workers.connections()) {
+                running.add(executor.submit(() -> {
+                    int idx;
+                    while ((idx = next.getAndIncrement()) < fileNames.size()) {
+                        try {
+                            fetched.set(idx, fetch(worker, fileNames.get(idx)));
+                        } catch (Exception exp) {
+                            _logger.error("Unable to read the file {} {}", fileNames.get(idx), exp.getMessage(), exp);
+                            fetched.set(idx, failure(fileNames.get(idx), exp));
+                            if (!workers.repair(worker)) return;
+                        }
+                    }
+                }));
+            }
+            for (Future<?> task : running) {
+                try {
+                    task.get();
+                } catch (ExecutionException exp) {
+                    _logger.error("A read many worker failed {}", exp.getMessage(), exp);
+                }
+            }
+            for (int i = 0; i < fileNames.size(); i++) {
+                final Result<InputStream, FTPSFileStatus> result = fetched.get(i);
+                results.add(result != null ? result : failure(fileNames.get(i),
+                        new IOException("No connection left to read the file")));
+            }
+            return results;
+        } catch (InterruptedException exp) {
+            Thread.currentThread().interrupt();
+            executor.shutdownNow();
+            // Do not leak the spool files which were already fetched
+            for (int i = 0; i < fileNames.size(); i++) {
+                final Result<InputStream, FTPSFileStatus> result = fetched.get(i);
+                if (result != null && result.getOutput() != null) FTPSUtil.close(result.getOutput());
+            }
+            throw new RuntimeException("Interrupted while reading the files", exp);
+        } finally {
+            executor.shutdownNow();
+            workers.close();
+        }
+    }
+
+    /**
+     * @throws Exception when the file could not be read, the connection is not worth trusting then
+     */
+    private Result<InputStream, FTPSFileStatus> fetch(final FTPSConnection connection,
+                                                      final String fileName) throws Exception {
+        final String path = FTPSUtil.trimPath(_sourceFolder, fileName);
+        Path spool = null;
+        try {
+            final FTPFile file = connection.ftpsClient().stat(path);
+            if (file == null) throw new FileNotFoundException("The file does not exists " + path);
+
+            spool = Files.createTempFile("ftps-", ".part");
+            long size = 0;
+            final InputStream is = connection.ftpsClient().retrieveFileStream(path);
+            if (is == null) throw new IOException("Unable to open the data connection for " + path);
+            try (OutputStream os = Files.newOutputStream(spool)) {
+                final byte[] buffer = new byte[_bufferSizeInBytes];
+                int count;
+                while ((count = is.read(buffer)) >= 0) {
+                    os.write(buffer, 0, count);
+                    size += count;
+                }
+            } finally {
+                FTPSUtil.close(is);
+            }
+            if (!connection.ftpsClient().completePendingCommand()) {
+                // The data connection can close early without an error on the client side (426 aborted)
+                throw new IOException("The transfer of " + path + " did not complete: " +
+                        connection.ftpsClient().getReplyString());
+            }
+            if (file.getSize() > 0 && size != file.getSize()) {
+                throw new IOException("Read " + size + " bytes of " + path + " instead of " + file.getSize());
+            }
+            if (_deleteFileAfterRead) connection.ftpsClient().deleteFile(path);
+
+            final LocalDateTime timestamp = file.getTimestamp() == null ? LocalDateTime.now() :
+                    LocalDateTime.ofInstant(file.getTimestamp().toInstant(), ZoneId.systemDefault());
+            final Result<InputStream, FTPSFileStatus> result = Result.<InputStream, FTPSFileStatus>builder()
+                    .output(new SpoolFileInputStream(spool))
+                    .attributes(FTPSFileStatus.success(_sourceFolder, fileName, size, timestamp))
+                    .build();
+            spool = null;
+            if (_logger.isDebugEnabled()) _logger.debug("{} fetched, {} bytes", path, size);
+            return result;
+        } finally {
+            if (spool != null) {
+                try {
+                    Files.deleteIfExists(spool);
+                } catch (IOException exp) {
+                    _logger.warn("Unable to delete the spool file {}", spool, exp);
+                }
+            }
+        }
+    }
+
+    private Result<InputStream, FTPSFileStatus> failure(final String fileName, final Throwable cause) {
+        return Result.<InputStream, FTPSFileStatus>builder()
+                .attributes(FTPSFileStatus.failure(_sourceFolder, fileName,
+                        cause == null ? "Unknown error" : cause.getMessage()))
+                .build();
+    }
+}
@@ -0,0 +1,184 @@
+package org.neointegrations.ftps.internal.stream;
+
+import com.google.common.io.CountingInputStream;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.mule.runtime.api.metadata.TypedValue;
+import org.mule.runtime.api.streaming.bytes.CursorStreamProvider;
+import org.neointegrations.ftps.api.FTPSFileStatus;
+import org.neointegrations.ftps.internal.FTPSConnection;
+import org.neointegrations.ftps.internal.FTPSConnectionProvider;
+import org.neointegrations.ftps.internal.util.FTPSUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Uploads a batch of files over several pooled connections at the same time. The target folders are prepared once
+ * for the whole batch before any upload starts, instead of walking them with CWD/MKD for every file.
+ * <p>
+ * A file which could not be uploaded is reported with a failed {@link FTPSFileStatus}, the other files are not
+ * affected. The statuses keep the order of the batch.
+ */
+public class BulkUpload {
+    private static final Logger _logger = LoggerFactory.getLogger(BulkUpload.class);
+
+    private final FTPSConnectionProvider _provider;
+    private final String _targetFolder;
+    private final int _concurrency;
+    private final boolean _createIntermediateFile;
+    private final boolean _overwriteFile;
+    private final boolean _createParentDirectory;
+
+    public BulkUpload(final FTPSConnectionProvider provider,
+                      final String targetFolder,
+                      final int concurrency,
+                      final boolean createIntermediateFile,
+                      final boolean overwriteFile,
+                      final boolean createParentDirectory) {
+        this._provider = provider;
+        this._targetFolder = targetFolder;
+        this._concurrency = Math.max(1, concurrency);
+        this._createIntermediateFile = createIntermediateFile;
+        this._overwriteFile = overwriteFile;
+        this._createParentDirectory = createParentDirectory;
+    }
+
+    /**
+     * @param connection used for the folder setup
+     * @param files      file names, which may contain a sub folder of the target folder, and their content in any
+     *                   of the forms accepted by {@link #contentOf(Object)}
+     */
+    public List<FTPSFileStatus> upload(final FTPSConnection connection, final Map<String, ?> files) {
+        final List<FTPSFileStatus> statuses = new ArrayList<>(files.size());
+        if (files.isEmpty()) return statuses;
+
+        final Set<String> failedFolders = prepareFolders(connection, files.keySet());
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(_concurrency, files.size()),
+                new ThreadFactoryBuilder()
+                        .setNameFormat("ftps-write-many-%d")
+                        .setDaemon(true)
+                        .build());
+        try {
+            final List<String> names = new ArrayList<>(files.size());
+            final List<Future<FTPSFileStatus>> futures = new ArrayList<>(files.size());
+            for (Map.Entry<String, ?> file : files.entrySet()) {
+                names.add(file.getKey());
+                if (failedFolders.contains(folderOf(file.getKey()))) {
+                    futures.add(null);
+                } else {
+                    futures.add(executor.submit(() -> store(file.getKey(), file.getValue())));
+                }
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                if (futures.get(i) == null) {
+                    statuses.add(FTPSFileStatus.failure(folderOf(names.get(i)), nameOf(names.get(i)),
+                            "Unable to create the folder " + folderOf(names.get(i))));
+                    continue;
+                }
+                try {
+                    statuses.add(futures.get(i).get());
+                } catch (ExecutionException exp) {
+                    statuses.add(FTPSFileStatus.failure(folderOf(names.get(i)), nameOf(names.get(i)),
+                            exp.getCause() == null ? "Unknown error" : exp.getCause().getMessage()));
+                }
+            }
+            return statuses;
+        } catch (InterruptedException exp) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while writing the files", exp);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Set<String> prepareFolders(final FTPSConnection connection, final Set<String> names) {
+        final Set<String> folders = new LinkedHashSet<>();
+        for (String name : names) folders.add(folderOf(name));
+
+        final Set<String> failed = new LinkedHashSet<>();
+        if (!_createParentDirectory) return failed;
+        for (String folder : folders) {
+            try {
+                if (!connection.ftpsClient().createParentDirectory(folder)) failed.add(folder);
+            } catch (Exception exp) {
+                _logger.error("Unable to create the folder {} {}", folder, exp.getMessage(), exp);
+                failed.add(folder);
+            }
+        }
+        if (_logger.isDebugEnabled()) _logger.debug("{} target folders prepared, {} failed", folders.size(), failed.size());
+        return failed;
+    }
+
+    /**
+     * The values of a map built in DataWeave are not streams: a text is a {@link String}, binary content is a
+     * {@code byte[]} and a streamed payload is a {@link CursorStreamProvider}, possibly wrapped in a
+     * {@link TypedValue}. Each of them is turned into a stream of its own here.
+     *
+     * @throws IllegalArgumentException when the value is none of them
+     */
+    public static InputStream contentOf(final Object value) {
+        if (value instanceof TypedValue) return contentOf(((TypedValue<?>) value).getValue());
+        if (value instanceof CursorStreamProvider) return ((CursorStreamProvider) value).openCursor();
+        if (value instanceof InputStream) return (InputStream) value;
+        if (value instanceof byte[]) return new ByteArrayInputStream((byte[]) value);
+        if (value instanceof String) return new ByteArrayInputStream(((String) value).getBytes(StandardCharsets.UTF_8));
+        throw new IllegalArgumentException("Unsupported file content " +
+                (value == null ? "null" : value.getClass().getName()));
+    }
+
+    private FTPSFileStatus store(final String name, final Object value) {
+        final String folder = folderOf(name);
+        final String fileName = nameOf(name);
+        FTPSConnection connection = null;
+        InputStream content = null;
+        boolean reusable = false;
+        try {
+            content = contentOf(value);
+            connection = _provider.connect();
+            final CountingInputStream counting = new CountingInputStream(content);
+            if (!FTPSFileWriter.write(connection, folder, fileName, counting,
+                    _createIntermediateFile, _overwriteFile, false)) {
+                reusable = true;
+                return FTPSFileStatus.failure(folder, fileName, "Unable to create the file");
+            }
+            reusable = true;
+            if (_logger.isDebugEnabled()) _logger.debug("{} successfully created", fileName);
+            return FTPSFileStatus.success(folder, fileName, counting.getCount(), LocalDateTime.now());
+        } catch (IllegalStateException exp) {
+            // The file exists and must not be overwritten, the connection itself is fine
+            reusable = true;
+            return FTPSFileStatus.failure(folder, fileName, exp.getMessage());
+        } catch (Exception exp) {
+            _logger.error("Unable write file {} {}", fileName, exp.getMessage(), exp);
+            return FTPSFileStatus.failure(folder, fileName, exp.getMessage());
+        } finally {
+            FTPSUtil.close(content);
+            if (connection != null) {
+                if (reusable) connection.close();
+                else _provider.invalidate(connection);
+            }
+        }
+    }
+
+    private String folderOf(final String name) {
+        final int idx = name.lastIndexOf('/');
+        return idx <= 0 ? _targetFolder : FTPSUtil.trimPath(_targetFolder, name.substring(0, idx));
+    }
+
+    private static String nameOf(final String name) {
+        return name.substring(name.lastIndexOf('/') + 1);
+    }
+}
@@ -0,0 +1,72 @@
+package org.neointegrations.ftps.internal.stream;
+
+import org.apache.commons.net.ftp.FTPFile;
+import org.mule.runtime.api.connection.ConnectionException;
+import org.neointegrations.ftps.internal.FTPSConnection;
+import org.neointegrations.ftps.internal.FTPSConnectionProvider;
+import org.neointegrations.ftps.internal.util.FTPSUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Calendar;
+
+/**
+ * Uploads one file into a folder which already exists, optionally through an intermediate name which is renamed
+ * once the upload is complete. Shared by the single and the batch write operations.
+ */
+public final class FTPSFileWriter {
+    private static final Logger _logger = LoggerFactory.getLogger(FTPSFileWriter.class);
+
+    private FTPSFileWriter() {
+    }
+
+    public static boolean write(final FTPSConnection connection,
+                                final String targetFolder,
+                                final String targetFileName,
+                                final InputStream sourceStream,
+                                final boolean createIntermediateFile,
+                                final boolean overwriteFile,
+                                final boolean resumableUpload) throws IOException, ConnectionException {
+        String path = FTPSUtil.trimPath(targetFolder, targetFileName);
+        FTPFile existing = connection.ftpsClient().stat(path);
+        if (_logger.isDebugEnabled()) _logger.debug("existing={}", existing);
+        if (!overwriteFile) {
+            if (existing != null) {
+                throw new IllegalStateException("File already exist at the target location: " + path);
+            }
+        }
+
+        boolean status = false;
+        if (createIntermediateFile) {
+            String intermediateFileName = "__" + Calendar.getInstance().getTimeInMillis() + "_" + targetFileName;
+            String intermediatePath = FTPSUtil.trimPath(targetFolder, intermediateFileName);
+            status = storeFile(connection, intermediatePath, sourceStream, resumableUpload);
+            if (status) {
+                if (existing != null) {
+                    if (_logger.isDebugEnabled()) _logger.debug("{} file deleted", path);
+                    connection.ftpsClient().deleteFile(path);
+                }
+                status = connection.ftpsClient().rename(intermediatePath, path);
+            }
+        } else {
+            if (existing != null) {
+                if (_logger.isDebugEnabled()) _logger.debug("{} file deleted", path);
+                connection.ftpsClient().deleteFile(path);
+            }
+            status = storeFile(connection, path, sourceStream, resumableUpload);
+        }
+        return status;
+    }
+
+    private static boolean storeFile(final FTPSConnection connection,
+                                     final String path,
+                                     final InputStream sourceStream,
+                                     final boolean resumableUpload) throws IOException, ConnectionException {
+        if (!resumableUpload) return connection.ftpsClient().storeFile(path, sourceStream);
+        final FTPSConnectionProvider provider = connection.getProvider();
+        return new ResumableUpload(path, provider.getResumeAttempts(), provider.getResumeBackoffMillis())
+                .upload(connection, sourceStream);
+    }
+}
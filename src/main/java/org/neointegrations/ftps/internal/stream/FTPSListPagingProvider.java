@@ -0,0 +1,100 @@
+package org.neointegrations.ftps.internal.stream;
+
+import org.apache.commons.net.ftp.FTPFile;
+import org.mule.runtime.extension.api.runtime.operation.Result;
+import org.mule.runtime.extension.api.runtime.streaming.PagingProvider;
+import org.neointegrations.ftps.api.FTPSFileAttributes;
+import org.neointegrations.ftps.internal.FTPSConnection;
+import org.neointegrations.ftps.internal.client.FTPFileIterator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Predicate;
+
+/**
+ * Hands out a directory listing one page at a time while the listing is still being received, so the memory
+ * used stays bounded by the page size and the first page is available before the server finishes the listing.
+ * The listing is bound to one control connection, so the provider asks Mule for sticky connections.
+ */
+public class FTPSListPagingProvider implements PagingProvider<FTPSConnection, Result<LazyInputStream, FTPSFileAttributes>> {
+
+    private static final Logger _logger = LoggerFactory.getLogger(FTPSListPagingProvider.class);
+
+    private final String _sourceFolder;
+    private final Predicate<FTPSFileAttributes> _matcher;
+    private final boolean _createIntermediateFile;
+    private final boolean _deleteTheFileAfterRead;
+    private final int _pageSize;
+    private FTPFileIterator _iterator = null;
+
+    public FTPSListPagingProvider(final String sourceFolder,
+                                  final Predicate<FTPSFileAttributes> matcher,
+                                  final boolean createIntermediateFile,
+                                  final boolean deleteTheFileAfterRead,
+                                  final int pageSize) {
+        if (pageSize <= 0) throw new IllegalArgumentException("pageSize must be greater than 0");
+        this._sourceFolder = sourceFolder;
+        this._matcher = matcher;
+        this._createIntermediateFile = createIntermediateFile;
+        this._deleteTheFileAfterRead = deleteTheFileAfterRead;
+        this._pageSize = pageSize;
+    }
+
+    @Override
+    public List<Result<LazyInputStream, FTPSFileAttributes>> getPage(final FTPSConnection connection) {
+        final List<Result<LazyInputStream, FTPSFileAttributes>> page = new ArrayList<>(_pageSize);
+        try {
+            if (_iterator == null) _iterator = connection.ftpsClient().iterateFiles(_sourceFolder);
+
+            while (page.size() < _pageSize && _iterator.hasNext()) {
+                FTPFile file = _iterator.next();
+                if (file == null || file.isDirectory() ||
+                        (file.getName() != null && file.getName().startsWith("__"))) {
+                    continue;
+                }
+
+                FTPSFileAttributes attr = new FTPSFileAttributes(file.getSize(), file.isFile(),
+                        file.isDirectory(), file.isSymbolicLink(), _sourceFolder,
+                        file.getName(), file.getTimestamp().getTime(), file);
+                if (!_matcher.test(attr)) continue;
+
+                page.add(Result.<LazyInputStream, FTPSFileAttributes>builder()
+                        .output(new LazyInputStream(_sourceFolder, file.getName(), _deleteTheFileAfterRead,
+                                connection.getProvider(), _createIntermediateFile, attr.getTimestamp())
+                                .withExpectedSize(file.getSize()))
+                        .attributes(attr)
+                        .build());
+            }
+            if (_logger.isDebugEnabled()) _logger.debug("Listing page of {} files ready", page.size());
+            return page;
+        } catch (RuntimeException e) {
+            _logger.error("Unable to list files {}", e.getMessage(), e);
+            close(connection);
+            throw e;
+        } catch (Exception e) {
+            _logger.error("Unable to list files {}", e.getMessage(), e);
+            close(connection);
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public Optional<Integer> getTotalResults(final FTPSConnection connection) {
+        return Optional.empty();
+    }
+
+    @Override
+    public boolean useStickyConnections() {
+        return true;
+    }
+
+    @Override
+    public void close(final FTPSConnection connection) {
+        if (_iterator != null) {
+            _iterator.close();
+        }
+    }
+}
@@ -8,9 +8,14 @@ import org.neointegrations.ftps.internal.util.FTPSUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.Calendar;
@@ -21,6 +26,7 @@ import java.util.concurrent.locks.ReentrantLock;
 public class LazyInputStream extends InputStream {
 
     private static final Logger _logger = LoggerFactory.getLogger(LazyInputStream.class);
+    private static final int MIN_BUFFER_SIZE = 8192;
     private final ReentrantLock _lock = new ReentrantLock();
     private InputStream _inputStream = null;
     private FTPSConnection _connection = null;
@@ -33,6 +39,21 @@ public class LazyInputStream extends InputStream {
     private boolean _started = false;
     private final boolean _createIntermediateFile;
     private final String _timestamp;
+    private long _segmentSizeInBytes = 0;
+    private int _parallelism = 1;
+    private boolean _spooled = false;
+    // Bytes received from the server so far, used as the REST offset when the transfer is resumed
+    private long _position = 0;
+    // Size of the file when it was listed, -1 when it is not known
+    private long _expectedSize = -1;
+    // Resumes of this transfer so far, limited by the provider's resumeAttempts
+    private int _resumes = 0;
+    private byte[] _buffer = null;
+    private int _bufferPosition = 0;
+    private int _bufferLength = 0;
+    // Runs once the stream is closed, used to give back the read-ahead budget of a prefetched file
+    private Runnable _onClose = null;
+    private boolean _closed = false;
 
 
     public LazyInputStream(final String directory,
@@ -51,14 +72,47 @@ public class LazyInputStream extends InputStream {
         this._timestamp = FTPSUtil.timestamp(timestamp);
     }
 
+    /**
+     * Download files bigger than {@code segmentSizeInBytes} in segments over {@code parallelism} connections
+     * into a local spool file, instead of streaming them over one connection.
+     */
+    public LazyInputStream withSegmentedDownload(final long segmentSizeInBytes, final int parallelism) {
+        this._segmentSizeInBytes = segmentSizeInBytes;
+        this._parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * A transfer ending before {@code sizeInBytes} bytes were received is treated as broken, instead of as the
+     * end of the file. A negative size is not known and is not checked.
+     */
+    public LazyInputStream withExpectedSize(final long sizeInBytes) {
+        this._expectedSize = sizeInBytes;
+        return this;
+    }
+
     @Override
     public void close() throws IOException {
+        // Waits for a prefetch in progress, so its content is released as well
+        _lock.lock();
+        try {
+            doClose();
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    private void doClose() {
+        // Closed already at the end of the stream, the post read actions must not run twice
+        if (_closed) return;
+        _closed = true;
         try {
             // CLose the stream
             if (_inputStream != null) {
                 FTPSUtil.close(this._inputStream);
                 _inputStream = null;
-                _connection.ftpsClient().completePendingCommand();
+                // A spooled file has no transfer pending on this connection
+                if (!_spooled) _connection.ftpsClient().completePendingCommand();
             }
             // Delete the file, if
             // - the transfer has been finished successfully,
@@ -66,8 +120,10 @@ public class LazyInputStream extends InputStream {
             // - the connection object was for the file.
             if ((_started == true && _finished == true) &&
                     _deleteTheFileAfterRead == true &&
-                    _connection != null) {
+                    (_connection != null || _spooled)) {
 
+                // A prefetched file was downloaded over a connection which is already back in the pool
+                if (_connection == null) _connection = _provider.connect();
                 // Reconnect if connection was dropped
                 if (!_connection.isConnected()) {
                     _connection.reconnect();
@@ -75,12 +131,13 @@ public class LazyInputStream extends InputStream {
 
                 String path = FTPSUtil.trimPath(_directory, this._fileName);
                 _connection.ftpsClient().deleteFile(path);
-            } else if ((_started == true && _finished == false) &&
-                    _fileName != _originalFileName &&
-                    _connection != null) {
+            } else if (_finished == false &&
+                    _fileName != _originalFileName) {
                 // Rename to the original file name if
                 // - the file was renamed to intermediate name
-                // - the transfer was started but did not finished
+                // - the transfer was started (or prefetched) but did not finished
+                // A failed resume leaves no connection behind
+                if (_connection == null) _connection = _provider.connect();
                 renameToIntermediateOrOriginal(false);
             }
         } catch (Exception e) {
@@ -101,74 +158,261 @@ public class LazyInputStream extends InputStream {
                 _connection = null;
             }
 
+            BufferPool.release(_buffer);
+            _buffer = null;
+            _bufferPosition = 0;
+            _bufferLength = 0;
+
+            if (_onClose != null) {
+                _onClose.run();
+                _onClose = null;
+            }
+        }
+    }
+
+    /**
+     * Downloads the whole file now, ahead of the first read, into memory when it is not bigger than
+     * {@code inMemoryThresholdInBytes} and into a local spool file otherwise. The connection goes back to the pool
+     * as soon as the download is complete.
+     *
+     * @param onClose run once this stream is closed, only when the file was prefetched
+     * @return false when the stream was opened already or the download failed, the file is then read from the
+     * server on the first read as usual
+     */
+    public boolean prefetch(final int inMemoryThresholdInBytes, final Runnable onClose) {
+        _lock.lock();
+        try {
+            if (_closed || _inputStream != null || _position > 0) return false;
+            _inputStream = download(inMemoryThresholdInBytes);
+            _spooled = true;
+            _onClose = onClose;
+            if (_logger.isDebugEnabled()) _logger.debug("{} prefetched", _fileName);
+            return true;
+        } catch (Exception e) {
+            _logger.warn("Unable to prefetch {}, it will be read on demand {}", _fileName, e.getMessage(), e);
+            return false;
+        } finally {
+            _lock.unlock();
+        }
+    }
+
+    private InputStream download(final int inMemoryThresholdInBytes) throws IOException, ConnectionException {
+        _connection = _provider.connect();
+        Path spool = null;
+        boolean success = false;
+        try {
+            if (_createIntermediateFile) {
+                renameToIntermediateOrOriginal(true);
+            }
+            final String path = FTPSUtil.trimPath(_directory, _fileName);
+            final InputStream is = _connection.ftpsClient().retrieveFileStream(path);
+            if (is == null) throw new IOException("Unable to open the data connection for " + path);
+            final ByteArrayOutputStream memory = new ByteArrayOutputStream();
+            OutputStream out = memory;
+            long received = 0;
+            try {
+                final byte[] buffer = new byte[Math.max(8192, _provider.getBufferSizeInBytes())];
+                int count;
+                while ((count = is.read(buffer)) >= 0) {
+                    if (spool == null && memory.size() + count > inMemoryThresholdInBytes) {
+                        spool = Files.createTempFile("ftps-", ".part");
+                        out = Files.newOutputStream(spool);
+                        memory.writeTo(out);
+                    }
+                    out.write(buffer, 0, count);
+                    received += count;
+                }
+            } finally {
+                FTPSUtil.close(is);
+                if (out != memory) FTPSUtil.close(out);
+            }
+            // An aborted transfer must not be kept as the whole file, it is read on demand instead
+            if (!_connection.ftpsClient().completePendingCommand()) {
+                throw new IOException("Transfer of " + path + " was not confirmed by the server: " +
+                        _connection.ftpsClient().getReplyString());
+            }
+            if (_expectedSize >= 0 && received < _expectedSize) {
+                throw new IOException("Transfer of " + path + " ended after " + received + " of " +
+                        _expectedSize + " bytes");
+            }
+            final InputStream prefetched = spool == null ?
+                    new ByteArrayInputStream(memory.toByteArray()) : new SpoolFileInputStream(spool);
+            success = true;
+            return prefetched;
+        } finally {
+            if (!success && spool != null) Files.deleteIfExists(spool);
+            _connection.close();
+            _connection = null;
         }
     }
 
     @Override
     public long skip(long n) throws IOException {
+        if (n <= 0) return 0;
+        final int buffered = _bufferLength - _bufferPosition;
+        if (buffered > 0) {
+            final int skipped = (int) Math.min(buffered, n);
+            _bufferPosition += skipped;
+            return skipped;
+        }
         if (_inputStream == null) lazyLoadStream();
-        return _inputStream.skip(n);
+        long skipped = _inputStream.skip(n);
+        _position += skipped;
+        return skipped;
     }
 
     @Override
     public int read() throws IOException {
-        if (_inputStream == null) lazyLoadStream();
-        int count = this._inputStream.read();
-        if (_started == false && count >= 0) _started = true;
-        else if (count == -1) {
-            _finished = true;
-            this.close();
-        }
-        return count;
+        if (_finished) return -1;
+        if (_bufferPosition >= _bufferLength && fill() < 0) return endOfStream();
+        _started = true;
+        return _buffer[_bufferPosition++] & 0xff;
     }
 
 
     @Override
     public int read(byte[] b) throws IOException {
-        if (_inputStream == null) lazyLoadStream();
-        int count = this._inputStream.read();
-        if (_started == false && count >= 0) _started = true;
-        else if (count == -1) {
-            _finished = true;
-            this.close();
-        }
-        return count;
+        return read(b, 0, b.length);
     }
 
     @Override
     public int read(byte[] b, int off, int len) throws IOException {
-        if (_inputStream == null) lazyLoadStream();
-        int count = this._inputStream.read(b, off, len);
-        if (_started == false && count >= 0) _started = true;
-        else if (count == -1) {
-            _finished = true;
-            this.close();
+        if (off < 0 || len < 0 || len > b.length - off) throw new IndexOutOfBoundsException();
+        if (len == 0) return 0;
+        if (_finished) return -1;
+
+        int buffered = _bufferLength - _bufferPosition;
+        if (buffered <= 0) {
+            if (len >= bufferSize()) {
+                // Big reads go straight into the caller's array, without copying through the buffer
+                if (_inputStream == null) lazyLoadStream();
+                int count = readUnderlying(b, off, len);
+                if (count < 0) return endOfStream();
+                _started = true;
+                return count;
+            }
+            if ((buffered = fill()) < 0) return endOfStream();
         }
+        final int count = Math.min(buffered, len);
+        System.arraycopy(_buffer, _bufferPosition, b, off, count);
+        _bufferPosition += count;
+        _started = true;
         return count;
     }
 
     @Override
     public int available() throws IOException {
         if (_inputStream == null) lazyLoadStream();
-        return _inputStream.available();
+        return (_bufferLength - _bufferPosition) + _inputStream.available();
     }
 
     @Override
     public synchronized void reset() throws IOException {
-        if (_inputStream == null) lazyLoadStream();
-        _inputStream.reset();
+        throw new IOException("mark/reset not supported");
     }
 
     @Override
     public synchronized void mark(int readlimit) {
-        if (_inputStream == null) lazyLoadStream();
-        _inputStream.mark(readlimit);
+        // Not supported, the content is read once from the server
     }
 
     @Override
     public boolean markSupported() {
+        return false;
+    }
+
+    /**
+     * Refills the read buffer from the data connection.
+     *
+     * @return the number of bytes now buffered, or -1 at the end of the file
+     */
+    private int fill() throws IOException {
         if (_inputStream == null) lazyLoadStream();
-        return _inputStream.markSupported();
+        if (_buffer == null) _buffer = BufferPool.acquire(bufferSize());
+        _bufferPosition = 0;
+        _bufferLength = 0;
+        final int count = readUnderlying(_buffer, 0, _buffer.length);
+        if (count > 0) _bufferLength = count;
+        return count;
+    }
+
+    private int endOfStream() throws IOException {
+        _finished = true;
+        this.close();
+        return -1;
+    }
+
+    private int bufferSize() {
+        return Math.max(MIN_BUFFER_SIZE, _provider.getBufferSizeInBytes());
+    }
+
+    /**
+     * Reads from the data connection and, when the data connection breaks, opens a new one and carries on from
+     * {@code _position} with REST. The end of the data connection only ends the file once the server confirmed
+     * the transfer and the expected size was received, otherwise it is a broken transfer as well. The resumes are
+     * counted over the whole transfer, so a connection which keeps dropping can not resume it without limit.
+     */
+    private int readUnderlying(final byte[] b, final int off, final int len) throws IOException {
+        while (true) {
+            IOException broken;
+            try {
+                final int count = _inputStream.read(b, off, len);
+                if (count > 0) _position += count;
+                if (count >= 0 || _spooled) return count;
+                broken = endOfTransfer();
+                if (broken == null) return -1;
+            } catch (IOException exp) {
+                broken = exp;
+            }
+            if (_spooled || _resumes >= _provider.getResumeAttempts()) throw broken;
+            _resumes++;
+            _logger.warn("Transfer of {} broke after {} bytes, resuming (attempt {}) {}",
+                    _fileName, _position, _resumes, broken.getMessage());
+            resume(_resumes, broken);
+        }
+    }
+
+    /**
+     * Closes the finished data connection and checks the transfer is complete.
+     *
+     * @return null when the whole file was received, the reason it was not otherwise
+     */
+    private IOException endOfTransfer() throws IOException {
+        FTPSUtil.close(_inputStream);
+        _inputStream = null;
+        if (!_connection.ftpsClient().completePendingCommand()) {
+            return new IOException("Transfer of " + _fileName + " was not confirmed by the server after " +
+                    _position + " bytes: " + _connection.ftpsClient().getReplyString());
+        }
+        if (_expectedSize >= 0 && _position < _expectedSize) {
+            return new IOException("Transfer of " + _fileName + " ended after " + _position + " of " +
+                    _expectedSize + " bytes");
+        }
+        return null;
+    }
+
+    private void resume(final int attempt, final IOException cause) throws IOException {
+        FTPSUtil.close(_inputStream);
+        _inputStream = null;
+        // The control connection is in an unknown state after a broken transfer
+        _provider.invalidate(_connection);
+        _connection = null;
+        try {
+            Thread.sleep(_provider.getResumeBackoffMillis() << Math.min(attempt - 1, 16));
+            _connection = _provider.connect();
+            _inputStream = _connection.ftpsClient().retrieveFileStream(
+                    FTPSUtil.trimPath(_directory, _fileName), _position);
+        } catch (InterruptedException exp) {
+            Thread.currentThread().interrupt();
+            throw cause;
+        } catch (ConnectionException exp) {
+            cause.addSuppressed(exp);
+            throw cause;
+        }
+        if (_inputStream == null) {
+            _logger.warn("Server refused to restart {} at {}", _fileName, _position);
+            throw cause;
+        }
     }
 
     private synchronized void lazyLoadStream() {
@@ -185,11 +429,30 @@ public class LazyInputStream extends InputStream {
     private InputStream inputStream() {
         _logger.info("Opening inputStream");
         try {
+            // A failed resume may leave its connection behind
+            if (_connection != null) _connection.close();
             _connection = FTPClientProxyFactory.builder().connect(_provider);
-            if (_createIntermediateFile) {
+            if (_position > 0) {
+                // A previous resume failed, pick the transfer up where it broke
+                InputStream resumed = _connection.ftpsClient().retrieveFileStream(
+                        FTPSUtil.trimPath(_directory, _fileName), _position);
+                if (resumed == null) throw new IOException("Unable to restart " + _fileName + " at " + _position);
+                return resumed;
+            }
+            // A failed prefetch may have renamed it already
+            if (_createIntermediateFile && _fileName.equals(_originalFileName)) {
                 renameToIntermediateOrOriginal(true);
             }
-            return _connection.ftpsClient().retrieveFileStream(FTPSUtil.trimPath(_directory, _fileName));
+            final String path = FTPSUtil.trimPath(_directory, _fileName);
+            if (_segmentSizeInBytes > 0 && _parallelism > 1) {
+                InputStream spooled = new SegmentedDownload(_provider, path, _segmentSizeInBytes,
+                        _parallelism, _provider.getBufferSizeInBytes()).download(_connection);
+                if (spooled != null) {
+                    _spooled = true;
+                    return spooled;
+                }
+            }
+            return _connection.ftpsClient().retrieveFileStream(path);
         } catch (FileNotFoundException e) {
             _logger.error("File not found {}", _fileName, e);
             throw new RuntimeException(e);
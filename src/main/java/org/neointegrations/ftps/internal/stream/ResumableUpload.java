@@ -0,0 +1,95 @@
+package org.neointegrations.ftps.internal.stream;
+
+import com.google.common.io.CountingInputStream;
+import org.apache.commons.net.ftp.FTPReply;
+import org.mule.runtime.api.connection.ConnectionException;
+import org.mule.runtime.api.streaming.bytes.CursorStream;
+import org.neointegrations.ftps.internal.FTPSConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Uploads a stream and, when the transfer breaks, continues it from the size the server already has instead of
+ * sending the whole file again.
+ * <p>
+ * A repeatable (cursor) source is moved back to the remote size. Any other source can only be continued when the
+ * server received every byte read from it so far, otherwise the original error is raised.
+ */
+public class ResumableUpload {
+    private static final Logger _logger = LoggerFactory.getLogger(ResumableUpload.class);
+
+    private final String _path;
+    private final int _attempts;
+    private final long _backoffMillis;
+
+    public ResumableUpload(final String path, final int attempts, final long backoffMillis) {
+        this._path = path;
+        this._attempts = Math.max(0, attempts);
+        this._backoffMillis = Math.max(0, backoffMillis);
+    }
+
+    public boolean upload(final FTPSConnection connection, final InputStream source)
+            throws IOException, ConnectionException {
+        final CursorStream cursor = source instanceof CursorStream ? (CursorStream) source : null;
+        CountingInputStream counting = new CountingInputStream(source);
+        long offset = 0;
+        int attempt = 0;
+        while (true) {
+            try {
+                if (!connection.ftpsClient().storeFile(_path, counting, offset)) {
+                    final int reply = connection.ftpsClient().getReplyCode();
+                    // A permanent refusal (5xx) will not go away, a transient one (426 transfer aborted,
+                    // 451 local error) is a broken transfer like any other
+                    if (!FTPReply.isNegativeTransient(reply)) return false;
+                    throw new IOException("Upload of " + _path + " failed with reply " + reply);
+                }
+                break;
+            } catch (IOException exp) {
+                if (attempt >= _attempts) throw exp;
+                attempt++;
+                final long read = cursor != null ? cursor.getPosition() : offset + counting.getCount();
+                _logger.warn("Upload of {} broke after {} bytes were read, resuming (attempt {}) {}",
+                        _path, read, attempt, exp.getMessage());
+                offset = resumeOffset(connection, attempt, read, cursor, exp);
+                counting = new CountingInputStream(source);
+            }
+        }
+        final long expected = cursor != null ? cursor.getPosition() : offset + counting.getCount();
+        final long actual = connection.ftpsClient().size(_path);
+        if (actual >= 0 && actual != expected) {
+            throw new IOException("Upload of " + _path + " is incomplete, the server has " + actual +
+                    " bytes instead of " + expected);
+        }
+        return true;
+    }
+
+    private long resumeOffset(final FTPSConnection connection,
+                              final int attempt,
+                              final long read,
+                              final CursorStream cursor,
+                              final IOException cause) throws IOException {
+        try {
+            Thread.sleep(_backoffMillis << Math.min(attempt - 1, 16));
+            connection.ftpsClient().reconnect();
+            final long remote = connection.ftpsClient().size(_path);
+            if (remote < 0) throw cause;
+            if (remote == read) return remote;
+            if (cursor != null && remote < read) {
+                cursor.seek(remote);
+                return remote;
+            }
+            _logger.error("Unable to resume the upload of {}, the server has {} bytes but {} were read from a " +
+                    "source which can not be repeated", _path, remote, read);
+            throw cause;
+        } catch (InterruptedException exp) {
+            Thread.currentThread().interrupt();
+            throw cause;
+        } catch (ConnectionException exp) {
+            cause.addSuppressed(exp);
+            throw cause;
+        }
+    }
+}
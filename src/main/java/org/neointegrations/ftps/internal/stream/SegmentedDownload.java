@@ -0,0 +1,168 @@
+package org.neointegrations.ftps.internal.stream;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.mule.runtime.api.connection.ConnectionException;
+import org.neointegrations.ftps.internal.FTPSConnection;
+import org.neointegrations.ftps.internal.FTPSConnectionProvider;
+import org.neointegrations.ftps.internal.WorkerConnections;
+import org.neointegrations.ftps.internal.util.FTPSUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Downloads a large file as several byte ranges at the same time, each one over a pooled connection which was free
+ * when the download started using REST, and writes every range at its offset of a local spool file. A single TLS data connection is often capped
+ * well below the link capacity on high latency links, so this gets closer to it.
+ */
+public class SegmentedDownload {
+    private static final Logger _logger = LoggerFactory.getLogger(SegmentedDownload.class);
+
+    private final FTPSConnectionProvider _provider;
+    private final String _path;
+    private final long _segmentSizeInBytes;
+    private final int _parallelism;
+    private final int _bufferSizeInBytes;
+
+    public SegmentedDownload(final FTPSConnectionProvider provider,
+                             final String path,
+                             final long segmentSizeInBytes,
+                             final int parallelism,
+                             final int bufferSizeInBytes) {
+        this._provider = provider;
+        this._path = path;
+        this._segmentSizeInBytes = segmentSizeInBytes;
+        this._parallelism = Math.max(1, parallelism);
+        this._bufferSizeInBytes = Math.max(8192, bufferSizeInBytes);
+    }
+
+    /**
+     * @return a stream over the spooled file, or null when the file should be read with a single RETR instead
+     * (it is not bigger than one segment, its size is unknown, or the server does not support REST)
+     */
+    public InputStream download(final FTPSConnection connection) throws IOException, ConnectionException {
+        final long size = connection.ftpsClient().size(_path);
+        if (size <= _segmentSizeInBytes) return null;
+        if (!connection.ftpsClient().isRestartSupported()) {
+            _logger.info("The server does not support REST STREAM, reading {} with a single connection", _path);
+            return null;
+        }
+
+        final int segments = (int) ((size + _segmentSizeInBytes - 1) / _segmentSizeInBytes);
+        // The caller's connection is not one of the workers: the aborted transfers of the other segments leave
+        // their connection to be reconnected, and the caller reads the file with a single RETR when no other
+        // connection is free
+        final WorkerConnections workers = new WorkerConnections(_provider, null, Math.min(_parallelism, segments));
+        if (workers.size() == 0) {
+            _logger.info("No free connection in the pool, reading {} with a single connection", _path);
+            workers.close();
+            return null;
+        }
+
+        final Path spool = Files.createTempFile("ftps-", ".part");
+        final ExecutorService executor = Executors.newFixedThreadPool(workers.size(), new ThreadFactoryBuilder()
+                .setNameFormat("ftps-segment-%d")
+                .setDaemon(true)
+                .build());
+        boolean success = false;
+        try (FileChannel channel = FileChannel.open(spool, StandardOpenOption.WRITE)) {
+            final AtomicInteger next = new AtomicInteger();
+            final AtomicInteger fetched = new AtomicInteger();
+            final AtomicBoolean refused = new AtomicBoolean();
+            final List<Future<?>> running = new ArrayList<>(workers.size());
+            for (FTPSConnection worker : workers.connections()) {
+                running.add(executor.submit(() -> {
+                    int segment;
+                    while (!refused.get() && (segment = next.getAndIncrement()) < segments) {
+                        final long start = segment * _segmentSizeInBytes;
+                        final long length = Math.min(_segmentSizeInBytes, size - start);
+                        final Boolean reusable;
+                        try {
+                            reusable = fetch(worker, channel, start, length, start + length >= size);
+                        } catch (Exception exp) {
+                            workers.discard(worker);
+                            throw exp;
+                        }
+                        if (reusable == null) {
+                            refused.set(true);
+                        } else {
+                            fetched.incrementAndGet();
+                            // A transfer stopped before the end of the file leaves the control connection in
+                            // a state which is not worth trusting
+                            if (!reusable && !workers.repair(worker)) return null;
+                        }
+                    }
+                    return null;
+                }));
+            }
+            if (_logger.isDebugEnabled()) _logger.debug("Downloading {} in {} segments over {} connections",
+                    _path, segments, workers.size());
+
+            for (Future<?> task : running) task.get();
+            if (refused.get()) {
+                _logger.warn("The server refused a REST offset, reading {} with a single connection", _path);
+                return null;
+            }
+            if (fetched.get() < segments) {
+                throw new IOException("Unable to download " + (segments - fetched.get()) + " segments of " +
+                        _path + ", no worker connection left");
+            }
+            success = true;
+        } catch (InterruptedException exp) {
+            Thread.currentThread().interrupt();
+            throw new IOException(exp);
+        } catch (ExecutionException exp) {
+            throw new IOException("Unable to download a segment of " + _path, exp.getCause());
+        } finally {
+            executor.shutdownNow();
+            workers.close();
+            if (!success) Files.deleteIfExists(spool);
+        }
+        return new SpoolFileInputStream(spool);
+    }
+
+    /**
+     * @return null when the server refused the REST offset, otherwise whether the connection can still be used
+     */
+    private Boolean fetch(final FTPSConnection connection, final FileChannel channel, final long start,
+                          final long length, final boolean last) throws IOException, ConnectionException {
+        final InputStream is = connection.ftpsClient().retrieveFileStream(_path, start);
+        if (is == null) return null;
+        boolean reusable = false;
+        try {
+            final byte[] buffer = new byte[_bufferSizeInBytes];
+            long position = start;
+            long remaining = length;
+            while (remaining > 0) {
+                int count = is.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (count < 0) throw new IOException("Unexpected end of stream at offset " + position);
+                ByteBuffer bb = ByteBuffer.wrap(buffer, 0, count);
+                while (bb.hasRemaining()) {
+                    position += channel.write(bb, position);
+                }
+                remaining -= count;
+            }
+            // Only the last segment is read up to the end of the file and completes normally
+            reusable = last && is.read() < 0;
+        } finally {
+            FTPSUtil.close(is);
+            connection.ftpsClient().completePendingCommand();
+        }
+        return reusable;
+    }
+}
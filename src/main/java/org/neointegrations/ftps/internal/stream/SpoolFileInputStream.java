@@ -0,0 +1,35 @@
+package org.neointegrations.ftps.internal.stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Reads a local spool file and deletes it once the stream is closed.
+ */
+public class SpoolFileInputStream extends FileInputStream {
+    private static final Logger _logger = LoggerFactory.getLogger(SpoolFileInputStream.class);
+    private final Path _file;
+
+    public SpoolFileInputStream(final Path file) throws IOException {
+        super(file.toFile());
+        this._file = file;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            super.close();
+        } finally {
+            try {
+                Files.deleteIfExists(_file);
+            } catch (IOException exp) {
+                _logger.warn("Unable to delete the spool file {}", _file, exp);
+            }
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package org.neointegrations.ftps.internal;
+
+import org.mule.runtime.api.connection.ConnectionException;
+import org.neointegrations.ftps.internal.client.InMemoryProxy;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A provider over {@link InMemoryProxy} connections whose pool has a fixed number of free connections. A
+ * blocking {@link #connect()} fails the test, as it would wait forever on a pool at maxActive.
+ */
+public class InMemoryProvider extends FTPSConnectionProvider {
+    private final Map<String, byte[]> _files;
+    private final Set<String> _folders;
+    private final AtomicInteger _free;
+    private final AtomicInteger _borrowed = new AtomicInteger();
+
+    public InMemoryProvider(final Map<String, byte[]> files, final Set<String> folders, final int free)
+            throws ConnectionException {
+        this._files = files;
+        this._folders = folders;
+        this._free = new AtomicInteger(free);
+    }
+
+    public FTPSConnection held() throws ConnectionException {
+        return new FTPSConnection(this, new InMemoryProxy(_files, _folders));
+    }
+
+    /**
+     * @return the connections borrowed and not given back yet
+     */
+    public int borrowed() {
+        return _borrowed.get();
+    }
+
+    @Override
+    public FTPSConnection connect() throws ConnectionException {
+        throw new AssertionError("Blocking connect while the caller holds a connection");
+    }
+
+    @Override
+    public FTPSConnection tryConnect() throws ConnectionException {
+        if (_free.getAndDecrement() <= 0) {
+            _free.incrementAndGet();
+            return null;
+        }
+        _borrowed.incrementAndGet();
+        return new FTPSConnection(this, new InMemoryProxy(_files, _folders));
+    }
+
+    @Override
+    public void disconnect(final FTPSConnection connection) {
+        giveBack();
+    }
+
+    @Override
+    public void invalidate(final FTPSConnection connection) {
+        giveBack();
+    }
+
+    @Override
+    public int getBufferSizeInBytes() {
+        return 8192;
+    }
+
+    private void giveBack() {
+        _borrowed.decrementAndGet();
+        _free.incrementAndGet();
+    }
+}
@@ -0,0 +1,73 @@
+package org.neointegrations.ftps.internal.client;
+
+import org.apache.commons.net.ftp.FTP;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class ClearCommandChannelTestCase {
+
+    @Test
+    public void commandsAfterCccTravelInClear() throws Exception {
+        try (LoopbackFTPSServer server = new LoopbackFTPSServer(0)) {
+            FTPSClient client = login(server);
+            client.execPROT("P");
+
+            assertThat(client.clearCommandChannel(), is(true));
+            assertThat(client.setFileType(FTP.BINARY_FILE_TYPE), is(true));
+            assertThat(client.sendNoOp(), is(true));
+            client.logout();
+            client.disconnect();
+
+            server.await();
+            assertThat(server.clearCommands().get(0), is("TYPE I"));
+        }
+    }
+
+    @Test
+    public void filesAreRetrievedOverClearAndProtectedDataChannels() throws Exception {
+        final int size = 300_000;
+        try (LoopbackFTPSServer server = new LoopbackFTPSServer(size)) {
+            FTPSClient client = login(server);
+            client.setFileType(FTP.BINARY_FILE_TYPE);
+            client.enterLocalPassiveMode();
+
+            client.execPROT("C");
+            assertThat(retrieve(client), is((long) size));
+            client.execPROT("P");
+            assertThat(retrieve(client), is((long) size));
+            client.logout();
+            client.disconnect();
+            server.await();
+        }
+    }
+
+    static FTPSClient login(LoopbackFTPSServer server) throws Exception {
+        FTPSClient client = new FTPSClient(false, LoopbackFTPSServer.trustAllContext(), false);
+        client.setDefaultTimeout(10_000);
+        client.connect(InetAddress.getLoopbackAddress(), server.port());
+        client.setSoTimeout(10_000);
+        assertThat(client.login("user", "password"), is(true));
+        client.execPBSZ(0);
+        return client;
+    }
+
+    /**
+     * @return the number of bytes received, once the server confirmed the transfer
+     */
+    static long retrieve(FTPSClient client) throws IOException {
+        long total = 0;
+        try (InputStream in = client.retrieveFileStream("file.bin")) {
+            final byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) total += read;
+        }
+        if (!client.completePendingCommand()) throw new IOException(client.getReplyString());
+        return total;
+    }
+}
@@ -0,0 +1,94 @@
+package org.neointegrations.ftps.internal.client;
+
+import org.apache.commons.net.ftp.FTP;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CPU time spent on one GB downloaded over a loopback data channel in clear (PROT C) and protected by TLS
+ * (PROT P). Every iteration is a single download of {@code sizeInMegabytes}, so the score is the wall time of one
+ * download. The {@code clientCpuMillis} and {@code serverCpuMillis} counters are the CPU time each side spent,
+ * summed over the measurement iterations.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DataChannelProtectionBenchmark {
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    @Param({"C", "P"})
+    public String prot;
+
+    @Param({"1024"})
+    public int sizeInMegabytes;
+
+    private LoopbackFTPSServer _server;
+    private FTPSClient _client;
+
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(DataChannelProtectionBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class CpuTime {
+        public long clientCpuMillis;
+        public long serverCpuMillis;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            clientCpuMillis = 0;
+            serverCpuMillis = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void login() throws Exception {
+        _server = new LoopbackFTPSServer(sizeInMegabytes * 1024L * 1024L);
+        _client = ClearCommandChannelTestCase.login(_server);
+        _client.setFileType(FTP.BINARY_FILE_TYPE);
+        _client.enterLocalPassiveMode();
+        _client.execPROT(prot);
+    }
+
+    @TearDown(Level.Trial)
+    public void logout() throws Exception {
+        _client.logout();
+        _client.disconnect();
+        _server.await();
+        _server.close();
+    }
+
+    @Benchmark
+    public long download(final CpuTime cpu) throws IOException {
+        final long server = _server.sendCpuNanos();
+        final long client = THREADS.getCurrentThreadCpuTime();
+        final long received = ClearCommandChannelTestCase.retrieve(_client);
+        cpu.clientCpuMillis += TimeUnit.NANOSECONDS.toMillis(THREADS.getCurrentThreadCpuTime() - client);
+        cpu.serverCpuMillis += TimeUnit.NANOSECONDS.toMillis(_server.sendCpuNanos() - server);
+        return received;
+    }
+}
@@ -0,0 +1,47 @@
+package org.neointegrations.ftps.internal.client;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class DeflateSocketTestCase {
+
+    @Test
+    public void dataIsInflatedAsItWasWritten() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 10_000; i++) sb.append("id,name,amount\n").append(i).append(",row,").append(i * 3).append('\n');
+        final byte[] content = sb.toString().getBytes(StandardCharsets.UTF_8);
+
+        try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            CompletableFuture<byte[]> received = CompletableFuture.supplyAsync(() -> {
+                try (Socket socket = new DeflateSocket(server.accept());
+                     InputStream in = socket.getInputStream()) {
+                    ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    byte[] buffer = new byte[4096];
+                    int count;
+                    while ((count = in.read(buffer)) >= 0) out.write(buffer, 0, count);
+                    return out.toByteArray();
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+
+            try (Socket socket = new DeflateSocket(new Socket(server.getInetAddress(), server.getLocalPort()))) {
+                OutputStream out = socket.getOutputStream();
+                out.write(content);
+                out.close();
+            }
+            assertThat(received.get(), is(content));
+        }
+    }
+}
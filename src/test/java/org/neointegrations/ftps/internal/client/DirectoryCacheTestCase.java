@@ -0,0 +1,41 @@
+package org.neointegrations.ftps.internal.client;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class DirectoryCacheTestCase {
+
+    @Test
+    public void pathsAreNormalized() {
+        DirectoryCache cache = new DirectoryCache(60_000, 100);
+        cache.add("/a//b/");
+        assertThat(cache.exists("/a/b"), is(true));
+        assertThat(cache.exists("\\a\\b"), is(true));
+        assertThat(cache.exists("/a"), is(false));
+    }
+
+    @Test
+    public void invalidationDropsTheFolderAndEverythingBelowIt() {
+        DirectoryCache cache = new DirectoryCache(60_000, 100);
+        cache.add("/a");
+        cache.add("/a/b");
+        cache.add("/a/b/c");
+        cache.add("/ab");
+
+        cache.invalidate("/a/b");
+        assertThat(cache.exists("/a"), is(true));
+        assertThat(cache.exists("/a/b"), is(false));
+        assertThat(cache.exists("/a/b/c"), is(false));
+        assertThat(cache.exists("/ab"), is(true));
+    }
+
+    @Test
+    public void entriesExpire() throws Exception {
+        DirectoryCache cache = new DirectoryCache(20, 100);
+        cache.add("/a");
+        Thread.sleep(50);
+        assertThat(cache.exists("/a"), is(false));
+    }
+}
@@ -0,0 +1,94 @@
+package org.neointegrations.ftps.internal.client;
+
+import org.apache.commons.net.ftp.FTPFile;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class FTPFileIteratorTestCase {
+
+    @Test
+    public void listOutputIsParsedEntryByEntry() throws Exception {
+        final List<String> listing = Arrays.asList(
+                "total 12",
+                "-rw-r--r--   1 ftp ftp      101 Jan 01 10:01 a.txt",
+                "not a listing entry",
+                "drwxr-xr-x   2 ftp ftp     4096 Jan 01 10:00 archive",
+                "-rw-r--r--   1 ftp ftp      102 Jan 01 10:02 b.txt");
+        try (LoopbackFTPSServer server = new LoopbackFTPSServer(0, listing)) {
+            final FTPSClient client = ClearCommandChannelTestCase.login(server);
+            client.enterLocalPassiveMode();
+
+            final List<FTPFile> files = readAll(client.openListing("/in", false));
+            assertThat(files.size(), is(3));
+            assertThat(files.get(0).getName(), is("a.txt"));
+            assertThat(files.get(0).getSize(), is(101L));
+            assertThat(files.get(1).isDirectory(), is(true));
+            assertThat(files.get(2).getName(), is("b.txt"));
+            // The end of the listing was confirmed, the next reply belongs to the next command
+            assertThat(client.sendNoOp(), is(true));
+            client.logout();
+            client.disconnect();
+            server.await();
+        }
+    }
+
+    @Test
+    public void mlsdOutputIsParsedEntryByEntry() throws Exception {
+        final List<String> listing = Arrays.asList(
+                "type=cdir;modify=20260101100000; .",
+                "type=file;size=101;modify=20260101100100; a.txt",
+                "type=file;size=oops;modify=20260101100200 b.txt",
+                "type=file;size=103;modify=20260101100300; c.txt");
+        try (LoopbackFTPSServer server = new LoopbackFTPSServer(0, listing)) {
+            final FTPSClient client = ClearCommandChannelTestCase.login(server);
+            client.enterLocalPassiveMode();
+
+            final List<FTPFile> files = readAll(client.openListing("/in", true));
+            assertThat(files.size(), is(3));
+            assertThat(files.get(0).isDirectory(), is(true));
+            assertThat(files.get(1).getName(), is("a.txt"));
+            assertThat(files.get(2).getSize(), is(103L));
+            assertThat(client.sendNoOp(), is(true));
+            client.logout();
+            client.disconnect();
+            server.await();
+        }
+    }
+
+    @Test
+    public void listingClosedMidwayLeavesTheConnectionUsable() throws Exception {
+        // Far more than the socket buffers hold, so the server is still sending when the listing is closed
+        final List<String> listing = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            listing.add("-rw-r--r--   1 ftp ftp      100 Jan 01 10:00 file-" + i + ".txt");
+        }
+        try (LoopbackFTPSServer server = new LoopbackFTPSServer(0, listing)) {
+            final FTPSClient client = ClearCommandChannelTestCase.login(server);
+            client.enterLocalPassiveMode();
+
+            final FTPFileIterator first = client.openListing("/in", false);
+            assertThat(first.next().getName(), is("file-0.txt"));
+            assertThat(first.next().getName(), is("file-1.txt"));
+            first.close();
+            assertThat(first.hasNext(), is(false));
+
+            assertThat(client.sendNoOp(), is(true));
+            assertThat(readAll(client.openListing("/in", false)).size(), is(listing.size()));
+            client.logout();
+            client.disconnect();
+            server.await();
+        }
+    }
+
+    private static List<FTPFile> readAll(final FTPFileIterator iterator) {
+        final List<FTPFile> files = new ArrayList<>();
+        while (iterator.hasNext()) files.add(iterator.next());
+        return files;
+    }
+}
@@ -0,0 +1,167 @@
+package org.neointegrations.ftps.internal.client;
+
+import org.junit.After;
+import org.junit.Test;
+import org.mule.runtime.api.connection.ConnectionException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNot.not;
+import static org.hamcrest.core.IsSame.sameInstance;
+
+public class FTPSClientProxyPoolTestCase {
+
+    private final List<FakeProxy> _created = new ArrayList<>();
+    private FTPSClientProxyPool _pool;
+
+    @After
+    public void closePool() {
+        if (_pool != null) _pool.close();
+    }
+
+    @Test
+    public void releasedConnectionIsBorrowedAgain() throws ConnectionException {
+        _pool = pool(2, 2, 0, 1000, 0, false);
+        final FTPSClientProxy first = _pool.borrow();
+        _pool.release(first);
+        assertThat(_pool.borrow(), is(sameInstance(first)));
+        assertThat(_created.size(), is(1));
+    }
+
+    @Test
+    public void releaseRestoresTheSession() throws ConnectionException {
+        _pool = pool(1, 1, 0, 1000, 0, false);
+        final FakeProxy proxy = (FakeProxy) _pool.borrow();
+        _pool.release(proxy);
+        assertThat(proxy.resets.get(), is(1));
+    }
+
+    @Test
+    public void connectionWhichCanNotBeResetIsClosed() throws ConnectionException {
+        _pool = pool(1, 1, 0, 1000, 0, false);
+        final FakeProxy proxy = (FakeProxy) _pool.borrow();
+        proxy.resettable = false;
+        _pool.release(proxy);
+        assertThat(proxy.closed, is(true));
+        assertThat(_pool.borrow(), is(not(sameInstance((FTPSClientProxy) proxy))));
+    }
+
+    @Test(expected = ConnectionException.class)
+    public void borrowTimesOutWhenEveryConnectionIsInUse() throws ConnectionException {
+        _pool = pool(1, 1, 0, 50, 0, false);
+        _pool.borrow();
+        _pool.borrow();
+    }
+
+    @Test
+    public void invalidConnectionIsReplacedOnBorrow() throws ConnectionException {
+        _pool = pool(1, 1, 0, 1000, 0, true);
+        final FakeProxy stale = (FakeProxy) _pool.borrow();
+        _pool.release(stale);
+        stale.healthy = false;
+        final FTPSClientProxy fresh = _pool.borrow();
+        assertThat(fresh, is(not(sameInstance((FTPSClientProxy) stale))));
+        assertThat(stale.closed, is(true));
+    }
+
+    @Test
+    public void idleConnectionsAreEvictedDownToMinIdle() throws Exception {
+        _pool = pool(3, 3, 1, 1000, 10, false);
+        final FakeProxy a = (FakeProxy) _pool.borrow();
+        final FakeProxy b = (FakeProxy) _pool.borrow();
+        final FakeProxy c = (FakeProxy) _pool.borrow();
+        _pool.release(a);
+        _pool.release(b);
+        _pool.release(c);
+        waitFor(() -> closedCount() == 2);
+        assertThat(c.closed, is(false));
+    }
+
+    @Test
+    public void minIdleIsRefilled() throws Exception {
+        _pool = pool(2, 2, 2, 1000, 10, false);
+        waitFor(() -> _created.size() == 2);
+        final FTPSClientProxy first = _pool.borrow();
+        final FTPSClientProxy second = _pool.borrow();
+        assertThat(_created.contains(first) && _created.contains(second), is(true));
+        assertThat(_created.size(), is(2));
+    }
+
+    @Test
+    public void refillDoesNotGoPastMaxActive() throws Exception {
+        _pool = pool(2, 2, 2, 1000, 10, false);
+        _pool.borrow();
+        _pool.borrow();
+        Thread.sleep(200);
+        assertThat(_created.size(), is(2));
+    }
+
+    private FTPSClientProxyPool pool(final int maxActive, final int maxIdle, final int minIdle,
+                                     final long maxWaitMillis, final long evictionMillis,
+                                     final boolean testOnBorrow) {
+        return new FTPSClientProxyPool(() -> {
+            final FakeProxy proxy = new FakeProxy();
+            synchronized (_created) {
+                _created.add(proxy);
+            }
+            return proxy;
+        }, maxActive, maxIdle, minIdle, maxWaitMillis, evictionMillis, evictionMillis, testOnBorrow);
+    }
+
+    private int closedCount() {
+        synchronized (_created) {
+            int closed = 0;
+            for (FakeProxy proxy : _created) if (proxy.closed) closed++;
+            return closed;
+        }
+    }
+
+    private static void waitFor(final Condition condition) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.holds()) {
+            if (System.currentTimeMillis() > deadline) throw new AssertionError("Condition not met in time");
+            Thread.sleep(10);
+        }
+    }
+
+    private interface Condition {
+        boolean holds();
+    }
+
+    private static final class FakeProxy extends FTPSClientProxy {
+        private final AtomicInteger resets = new AtomicInteger();
+        private volatile boolean healthy = true;
+        private volatile boolean resettable = true;
+        private volatile boolean closed = false;
+
+        private FakeProxy() throws ConnectionException {
+            super(false, null, false, false, false, null, null, null, "localhost", 21, 0, 0,
+                    0, false, null, false, false, false, null);
+        }
+
+        @Override
+        public boolean isConnected() {
+            return !closed;
+        }
+
+        @Override
+        public boolean test() {
+            return healthy && !closed;
+        }
+
+        @Override
+        public boolean resetSession() {
+            resets.incrementAndGet();
+            return resettable;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
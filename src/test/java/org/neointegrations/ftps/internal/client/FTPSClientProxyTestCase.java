@@ -0,0 +1,180 @@
+package org.neointegrations.ftps.internal.client;
+
+import org.apache.commons.net.ftp.FTPFile;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+import java.util.TimeZone;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+
+public class FTPSClientProxyTestCase {
+
+    private static final String FEAT_WITH_MLST = "211-Features:\r\n MLST type*;size*;modify*;\r\n MDTM\r\n SIZE\r\n211 End";
+    private static final String FEAT_WITHOUT_MLST = "211-Features:\r\n MDTM\r\n SIZE\r\n211 End";
+
+    @Test
+    public void folderAndParentEntriesAreRecognised() {
+        assertThat(FTPSClientProxy.isSelfOrParent(entry("type=cdir;modify=20260101100000; /in")), is(true));
+        assertThat(FTPSClientProxy.isSelfOrParent(entry("Type=PDir;modify=20260101100000; /")), is(true));
+        assertThat(FTPSClientProxy.isSelfOrParent(named(".")), is(true));
+        assertThat(FTPSClientProxy.isSelfOrParent(named("..")), is(true));
+        assertThat(FTPSClientProxy.isSelfOrParent(entry("type=dir;modify=20260101100000; archive")), is(false));
+        assertThat(FTPSClientProxy.isSelfOrParent(named("archive")), is(false));
+    }
+
+    @Test
+    public void machineListedDirectoriesLeaveOutTheFolderAndItsParent() throws Exception {
+        final List<String> listing = Arrays.asList(
+                "type=cdir;modify=20260101100000; .",
+                "type=pdir;modify=20260101100000; ..",
+                "type=dir;modify=20260101100000; archive",
+                "type=file;size=10;modify=20260101100000; a.txt");
+        try (LoopbackFTPSServer server = new LoopbackFTPSServer(0, listing).withReply("FEAT", FEAT_WITH_MLST)) {
+            final FTPSClientProxy proxy = connect(server, true);
+            final List<String> names = new ArrayList<>();
+            for (FTPFile folder : proxy.listDirectories("/in")) names.add(folder.getName());
+            assertThat(names, is(Arrays.asList("archive")));
+            proxy.close();
+            server.await();
+        }
+    }
+
+    @Test
+    public void sizeIsUnknownWhenTheSizeReplyDoesNotParse() throws Exception {
+        try (LoopbackFTPSServer server = new LoopbackFTPSServer(0)
+                .withReply("FEAT", FEAT_WITHOUT_MLST)
+                .withReply("SIZE", "213 unknown")) {
+            final FTPSClientProxy proxy = connect(server, true);
+            assertThat(proxy.size("/in/a.txt"), is(-1L));
+            proxy.close();
+            server.await();
+        }
+    }
+
+    @Test
+    public void sizeIsReadFromTheSizeReply() throws Exception {
+        try (LoopbackFTPSServer server = new LoopbackFTPSServer(0)
+                .withReply("FEAT", FEAT_WITHOUT_MLST)
+                .withReply("SIZE", "213 1234")) {
+            final FTPSClientProxy proxy = connect(server, true);
+            assertThat(proxy.isMachineListing(), is(false));
+            assertThat(proxy.size("/in/a.txt"), is(1234L));
+            proxy.close();
+            server.await();
+        }
+    }
+
+    @Test
+    public void sizeComesFromMlstWithMachineListing() throws Exception {
+        try (LoopbackFTPSServer server = new LoopbackFTPSServer(0)
+                .withReply("FEAT", FEAT_WITH_MLST)
+                .withReply("MLST", "250-Listing /in/a.txt\r\n type=file;size=42;modify=20260101100000; /in/a.txt\r\n250 End")
+                .withReply("SIZE", "500 not expected")) {
+            final FTPSClientProxy proxy = connect(server, true);
+            assertThat(proxy.isMachineListing(), is(true));
+            assertThat(proxy.size("/in/a.txt"), is(42L));
+            proxy.close();
+            server.await();
+            assertThat(sent(server, "SIZE"), is(false));
+        }
+    }
+
+    @Test
+    public void machineListingIsNotUsedWhenItIsNotWanted() throws Exception {
+        try (LoopbackFTPSServer server = new LoopbackFTPSServer(0)
+                .withReply("FEAT", FEAT_WITH_MLST)
+                .withReply("SIZE", "213 7")) {
+            final FTPSClientProxy proxy = connect(server, false);
+            assertThat(proxy.isMachineListing(), is(false));
+            assertThat(proxy.size("/in/a.txt"), is(7L));
+            proxy.close();
+            server.await();
+            assertThat(sent(server, "MLST"), is(false));
+        }
+    }
+
+    @Test
+    public void statFallsBackToMdtmAndSize() throws Exception {
+        try (LoopbackFTPSServer server = new LoopbackFTPSServer(0)
+                .withReply("FEAT", FEAT_WITHOUT_MLST)
+                .withReply("MDTM", "213 20260102030405")
+                .withReply("SIZE", "213 77")) {
+            final FTPSClientProxy proxy = connect(server, true);
+            final FTPFile file = proxy.stat("/in/a.txt");
+            assertThat(file.isFile(), is(true));
+            assertThat(file.getSize(), is(77L));
+            final Calendar timestamp = file.getTimestamp();
+            timestamp.setTimeZone(TimeZone.getTimeZone("UTC"));
+            assertThat(timestamp.get(Calendar.YEAR), is(2026));
+            assertThat(timestamp.get(Calendar.DAY_OF_MONTH), is(2));
+            assertThat(timestamp.get(Calendar.HOUR_OF_DAY), is(3));
+            proxy.close();
+            server.await();
+        }
+    }
+
+    @Test
+    public void statLeavesTheTypeUnknownWhenSizeIsNotAnswered() throws Exception {
+        try (LoopbackFTPSServer server = new LoopbackFTPSServer(0)
+                .withReply("FEAT", FEAT_WITHOUT_MLST)
+                .withReply("MDTM", "213 20260102030405")
+                .withReply("SIZE", "550 not a plain file")) {
+            final FTPSClientProxy proxy = connect(server, true);
+            final FTPFile folder = proxy.stat("/in");
+            assertThat(folder.getType(), is(FTPFile.UNKNOWN_TYPE));
+            assertThat(folder.isFile(), is(false));
+            assertThat(folder.isDirectory(), is(false));
+            assertThat(folder.getSize(), is(-1L));
+            proxy.close();
+            server.await();
+        }
+    }
+
+    @Test
+    public void statOfAMissingPathIsNull() throws Exception {
+        try (LoopbackFTPSServer server = new LoopbackFTPSServer(0)
+                .withReply("FEAT", FEAT_WITHOUT_MLST)
+                .withReply("MDTM", "550 no such file")) {
+            final FTPSClientProxy proxy = connect(server, true);
+            assertThat(proxy.stat("/in/missing.txt"), is(nullValue()));
+            proxy.close();
+            server.await();
+        }
+    }
+
+    private static FTPSClientProxy connect(final LoopbackFTPSServer server, final boolean machineListing)
+            throws Exception {
+        final FTPSClientProxy proxy = new FTPSClientProxy(false, LoopbackFTPSServer.trustAllContext(), false,
+                false, false, "UTC", "user", "password", InetAddress.getLoopbackAddress().getHostAddress(),
+                server.port(), 10_000, 10_000, 8192, machineListing, null, false, false, false, null);
+        proxy.connect();
+        return proxy;
+    }
+
+    private static boolean sent(final LoopbackFTPSServer server, final String command) {
+        for (String line : server.commands()) if (line.startsWith(command)) return true;
+        return false;
+    }
+
+    private static FTPFile entry(final String raw) {
+        final FTPFile file = new FTPFile();
+        file.setRawListing(raw);
+        file.setName(raw.substring(raw.indexOf(' ') + 1));
+        file.setType(FTPFile.DIRECTORY_TYPE);
+        return file;
+    }
+
+    private static FTPFile named(final String name) {
+        final FTPFile file = new FTPFile();
+        file.setName(name);
+        file.setType(FTPFile.DIRECTORY_TYPE);
+        return file;
+    }
+}
@@ -0,0 +1,235 @@
+package org.neointegrations.ftps.internal.client;
+
+import org.apache.commons.net.ftp.FTPFile;
+import org.apache.commons.net.ftp.FTPFileEntryParser;
+import org.apache.commons.net.ftp.parser.MLSxEntryParser;
+import org.apache.commons.net.ftp.parser.UnixFTPEntryParser;
+import org.mule.runtime.api.connection.ConnectionException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A connection to a server whose files and folders are kept in memory, shared by every proxy created over the
+ * same maps, so the classes working with several connections can be tested without a server.
+ */
+public class InMemoryProxy extends FTPSClientProxy {
+    private final Map<String, byte[]> _files;
+    private final Set<String> _folders;
+    private volatile boolean _connected = true;
+    private String _listing = null;
+    private boolean _machineListing = false;
+    private final AtomicInteger _completedListings = new AtomicInteger();
+
+    public InMemoryProxy(final Map<String, byte[]> files, final Set<String> folders) throws ConnectionException {
+        super(false, null, false, false, false, null, null, null, "localhost", 21, 0, 0,
+                0, false, null, false, false, false, null);
+        this._files = files;
+        this._folders = folders;
+    }
+
+    public static Map<String, byte[]> files() {
+        return new ConcurrentHashMap<>();
+    }
+
+    public static Set<String> folders() {
+        return ConcurrentHashMap.newKeySet();
+    }
+
+    /**
+     * Lists every folder as this raw LIST (or MLSD) output, parsed entry by entry by {@link FTPFileIterator} as a
+     * listing received from a server would be, instead of listing the files kept in memory.
+     */
+    public InMemoryProxy withListing(final String listing, final boolean machineListing) {
+        this._listing = listing;
+        this._machineListing = machineListing;
+        return this;
+    }
+
+    /**
+     * @return how many listings were completed on the control connection
+     */
+    public int completedListings() {
+        return _completedListings.get();
+    }
+
+    @Override
+    public boolean isConnected() {
+        return _connected;
+    }
+
+    @Override
+    public void reconnect() {
+        _connected = true;
+    }
+
+    @Override
+    public void close() {
+        _connected = false;
+    }
+
+    @Override
+    public boolean completePendingCommand() {
+        return true;
+    }
+
+    @Override
+    public boolean isRestartSupported() {
+        return true;
+    }
+
+    @Override
+    public long size(final String path) {
+        final byte[] content = _files.get(path);
+        return content == null ? -1 : content.length;
+    }
+
+    @Override
+    public FTPFile stat(final String path) {
+        final byte[] content = _files.get(path);
+        return content == null ? null : file(path.substring(path.lastIndexOf('/') + 1), content.length, false);
+    }
+
+    @Override
+    public InputStream retrieveFileStream(final String path) {
+        return retrieveFileStream(path, 0);
+    }
+
+    @Override
+    public InputStream retrieveFileStream(final String path, final long offset) {
+        final byte[] content = _files.get(path);
+        if (content == null) return null;
+        return new ByteArrayInputStream(content, (int) offset, content.length - (int) offset);
+    }
+
+    @Override
+    public boolean storeFile(final String path, final InputStream stream) throws IOException {
+        return storeFile(path, stream, 0);
+    }
+
+    /**
+     * Keeps the first {@code offset} bytes of the file, as REST and STOR would.
+     */
+    @Override
+    public boolean storeFile(final String path, final InputStream stream, final long offset) throws IOException {
+        final ByteArrayOutputStream content = new ByteArrayOutputStream();
+        final byte[] existing = _files.get(path);
+        if (existing != null && offset > 0) content.write(existing, 0, (int) Math.min(offset, existing.length));
+        final byte[] buffer = new byte[4096];
+        int read;
+        while ((read = stream.read(buffer)) != -1) content.write(buffer, 0, read);
+        _files.put(path, content.toByteArray());
+        return true;
+    }
+
+    @Override
+    public boolean rename(final String source, final String target) {
+        final byte[] content = _files.remove(source);
+        if (content == null) return false;
+        _files.put(target, content);
+        return true;
+    }
+
+    @Override
+    public String getReplyString() {
+        return "550 Requested action not taken";
+    }
+
+    @Override
+    public boolean deleteFile(final String path) {
+        return _files.remove(path) != null;
+    }
+
+    @Override
+    public boolean removeDirectory(final String folder) {
+        for (String path : _files.keySet()) if (path.startsWith(folder + "/")) return false;
+        for (String path : _folders) if (path.startsWith(folder + "/")) return false;
+        return _folders.remove(folder);
+    }
+
+    @Override
+    public FTPFileIterator iterateFiles(final String folder) throws IOException, ConnectionException {
+        if (_listing != null) {
+            final FTPFileEntryParser parser = _machineListing ? MLSxEntryParser.getInstance() : new UnixFTPEntryParser();
+            return new FTPFileIterator(new ListingClient(_completedListings),
+                    socketOver(_listing.getBytes(StandardCharsets.UTF_8)), parser, "UTF-8");
+        }
+        final List<FTPFile> children = new ArrayList<>();
+        for (Map.Entry<String, byte[]> file : _files.entrySet()) {
+            if (isChild(folder, file.getKey())) children.add(file(nameOf(file.getKey()), file.getValue().length, false));
+        }
+        for (String path : _folders) {
+            if (isChild(folder, path)) children.add(file(nameOf(path), 0, true));
+        }
+        final Iterator<FTPFile> it = children.iterator();
+        return new FTPFileIterator(null, socketOver(new byte[0]), null, "UTF-8") {
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public FTPFile next() {
+                return it.next();
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    private static Socket socketOver(final byte[] content) {
+        return new Socket() {
+            @Override
+            public InputStream getInputStream() {
+                return new ByteArrayInputStream(content);
+            }
+        };
+    }
+
+    private static boolean isChild(final String folder, final String path) {
+        return path.startsWith(folder + "/") && path.indexOf('/', folder.length() + 1) < 0;
+    }
+
+    private static String nameOf(final String path) {
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    private static FTPFile file(final String name, final long size, final boolean directory) {
+        final FTPFile file = new FTPFile();
+        file.setName(name);
+        file.setSize(size);
+        file.setType(directory ? FTPFile.DIRECTORY_TYPE : FTPFile.FILE_TYPE);
+        return file;
+    }
+
+    /**
+     * Completes a listing without a control connection, counting the listings completed.
+     */
+    private static final class ListingClient extends FTPSClient {
+        private final AtomicInteger _completed;
+
+        private ListingClient(final AtomicInteger completed) throws ConnectionException {
+            super(false, null, false);
+            this._completed = completed;
+        }
+
+        @Override
+        public boolean completePendingCommand() {
+            _completed.incrementAndGet();
+            return true;
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package org.neointegrations.ftps.internal.client;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyStore;
+import java.security.cert.X509Certificate;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Just enough of an explicit FTPS server on the loopback interface for one session: TLS after AUTH, back to clear
+ * text after CCC, and passive data connections, protected or not as PROT asked, which send a file of the given
+ * size on RETR and the given listing on LIST and MLSD. A transfer the client closes early is answered with 426.
+ * Any other command is answered with 200, unless a reply was set for it.
+ */
+final class LoopbackFTPSServer implements AutoCloseable {
+    private static final char[] PASSWORD = "123456".toCharArray();
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final ServerSocket _server;
+    private final SSLContext _context;
+    private final long _fileSize;
+    private final List<String> _listing;
+    private final List<String> _commands = new CopyOnWriteArrayList<>();
+    private final List<String> _clearCommands = new CopyOnWriteArrayList<>();
+    private final Map<String, String> _replies = new ConcurrentHashMap<>();
+    private final AtomicLong _sendCpuNanos = new AtomicLong();
+    private final CompletableFuture<Void> _session;
+
+    LoopbackFTPSServer(final long fileSize) throws Exception {
+        this(fileSize, Collections.emptyList());
+    }
+
+    LoopbackFTPSServer(final long fileSize, final List<String> listing) throws Exception {
+        this._fileSize = fileSize;
+        this._listing = listing;
+        this._context = serverContext();
+        this._server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        this._session = CompletableFuture.runAsync(this::serve);
+    }
+
+    int port() {
+        return _server.getLocalPort();
+    }
+
+    /**
+     * Answers the commands starting with {@code command} with {@code reply}, which may span several lines.
+     */
+    LoopbackFTPSServer withReply(final String command, final String reply) {
+        _replies.put(command, reply);
+        return this;
+    }
+
+    /**
+     * @return every command received after AUTH
+     */
+    List<String> commands() {
+        return _commands;
+    }
+
+    /**
+     * @return the commands received in clear text after CCC
+     */
+    List<String> clearCommands() {
+        return _clearCommands;
+    }
+
+    /**
+     * @return the CPU time the server spent sending files, TLS included
+     */
+    long sendCpuNanos() {
+        return _sendCpuNanos.get();
+    }
+
+    /**
+     * Waits for the end of the session, failing with what went wrong on the server side.
+     */
+    void await() throws Exception {
+        _session.get(10, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void close() throws Exception {
+        _server.close();
+    }
+
+    private void serve() {
+        ServerSocket passive = null;
+        try (Socket plain = _server.accept()) {
+            plain.setSoTimeout(60_000);
+            BufferedReader in = reader(plain.getInputStream());
+            Writer out = writer(plain.getOutputStream());
+            reply(out, "220 ready");
+            reply(out, in.readLine().startsWith("AUTH") ? "234 AUTH accepted" : "500 unexpected");
+
+            SSLSocket ssl = (SSLSocket) _context.getSocketFactory().createSocket(plain, null, plain.getPort(), false);
+            ssl.setUseClientMode(false);
+            ssl.startHandshake();
+            in = reader(ssl.getInputStream());
+            out = writer(ssl.getOutputStream());
+            boolean secure = true;
+            boolean protectedData = false;
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (!secure) _clearCommands.add(line);
+                _commands.add(line);
+                final String canned = cannedReply(line);
+                if (canned != null) reply(out, canned);
+                else if (line.startsWith("USER")) reply(out, "331 password please");
+                else if (line.startsWith("PASS")) reply(out, "230 logged in");
+                else if (line.startsWith("PROT")) {
+                    protectedData = line.endsWith("P");
+                    reply(out, "200 PROT " + (protectedData ? "P" : "C"));
+                } else if (line.startsWith("PASV")) {
+                    if (passive != null) passive.close();
+                    passive = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+                    reply(out, "227 Entering Passive Mode (" + hostPort(passive) + ")");
+                } else if (line.startsWith("RETR") || line.startsWith("LIST") || line.startsWith("MLSD")) {
+                    if (passive == null) {
+                        reply(out, "425 use PASV first");
+                        continue;
+                    }
+                    final boolean listing = !line.startsWith("RETR");
+                    reply(out, listing ? "150 sending the listing" : "150 sending " + _fileSize + " bytes");
+                    final boolean complete = send(passive, protectedData, listing);
+                    passive.close();
+                    passive = null;
+                    reply(out, complete ? "226 transfer complete" : "426 connection closed; transfer aborted");
+                } else if (line.startsWith("SYST")) reply(out, "215 UNIX Type: L8");
+                else if (line.startsWith("QUIT")) {
+                    reply(out, "221 bye");
+                    break;
+                } else if (line.startsWith("CCC")) {
+                    reply(out, "200 CCC accepted");
+                    ssl.close();
+                    secure = false;
+                    in = reader(plain.getInputStream());
+                    out = writer(plain.getOutputStream());
+                } else reply(out, "200 OK");
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        } finally {
+            if (passive != null) {
+                try {
+                    passive.close();
+                } catch (Exception ignored) {
+                    // Nothing else to release
+                }
+            }
+        }
+    }
+
+    /**
+     * @return false when the client closed the data connection before everything was sent
+     */
+    private boolean send(final ServerSocket passive, final boolean protectedData, final boolean listing)
+            throws Exception {
+        try (Socket data = passive.accept()) {
+            final long start = THREADS.getCurrentThreadCpuTime();
+            Socket socket = data;
+            if (protectedData) {
+                SSLSocket ssl = (SSLSocket) _context.getSocketFactory().createSocket(data, null, data.getPort(), true);
+                ssl.setUseClientMode(false);
+                ssl.startHandshake();
+                socket = ssl;
+            }
+            try {
+                final OutputStream out = socket.getOutputStream();
+                if (listing) {
+                    final Writer writer = writer(out);
+                    for (String entry : _listing) writer.write(entry + "\r\n");
+                    writer.flush();
+                } else {
+                    final byte[] chunk = new byte[64 * 1024];
+                    long left = _fileSize;
+                    while (left > 0) {
+                        final int count = (int) Math.min(chunk.length, left);
+                        out.write(chunk, 0, count);
+                        left -= count;
+                    }
+                    out.flush();
+                }
+                socket.close();
+                return true;
+            } catch (IOException exp) {
+                return false;
+            } finally {
+                _sendCpuNanos.addAndGet(THREADS.getCurrentThreadCpuTime() - start);
+            }
+        }
+    }
+
+    private String cannedReply(final String line) {
+        for (Map.Entry<String, String> reply : _replies.entrySet()) {
+            if (line.startsWith(reply.getKey())) return reply.getValue();
+        }
+        return null;
+    }
+
+    private static String hostPort(final ServerSocket passive) {
+        final StringBuilder hostPort = new StringBuilder();
+        for (byte part : passive.getInetAddress().getAddress()) hostPort.append(part & 0xff).append(',');
+        return hostPort.append(passive.getLocalPort() >> 8).append(',').append(passive.getLocalPort() & 0xff).toString();
+    }
+
+    private static BufferedReader reader(InputStream in) {
+        return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+
+    private static Writer writer(OutputStream out) {
+        return new OutputStreamWriter(out, StandardCharsets.UTF_8);
+    }
+
+    private static void reply(Writer out, String reply) throws Exception {
+        out.write(reply + "\r\n");
+        out.flush();
+    }
+
+    /**
+     * @return a server side context with the self signed certificate of keystore.jks
+     */
+    static SSLContext serverContext() throws Exception {
+        KeyStore keyStore = KeyStore.getInstance("JKS");
+        try (InputStream in = LoopbackFTPSServer.class.getClassLoader().getResourceAsStream("keystore.jks")) {
+            keyStore.load(in, PASSWORD);
+        }
+        KeyManagerFactory factory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        factory.init(keyStore, PASSWORD);
+        SSLContext context = SSLContext.getInstance("TLSv1.2");
+        context.init(factory.getKeyManagers(), null, null);
+        return context;
+    }
+
+    /**
+     * @return a client side context trusting the server's self signed certificate
+     */
+    static SSLContext trustAllContext() throws Exception {
+        SSLContext context = SSLContext.getInstance("TLSv1.2");
+        context.init(null, new TrustManager[]{new X509TrustManager() {
+            @Override
+            public void checkClientTrusted(X509Certificate[] chain, String authType) {
+            }
+
+            @Override
+            public void checkServerTrusted(X509Certificate[] chain, String authType) {
+            }
+
+            @Override
+            public X509Certificate[] getAcceptedIssuers() {
+                return new X509Certificate[0];
+            }
+        }}, null);
+        return context;
+    }
+}
@@ -0,0 +1,53 @@
+package org.neointegrations.ftps.internal.client;
+
+import org.junit.Test;
+import org.neointegrations.ftps.internal.InMemoryProvider;
+
+import java.util.Map;
+import java.util.Set;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class ParallelTreeDeleteTestCase {
+
+    @Test(timeout = 5000)
+    public void deletesOverTheCallersConnectionWhenThePoolIsFull() throws Exception {
+        final Map<String, byte[]> files = InMemoryProxy.files();
+        final Set<String> folders = InMemoryProxy.folders();
+        tree(files, folders);
+        final InMemoryProvider provider = new InMemoryProvider(files, folders, 0);
+
+        new ParallelTreeDelete(provider, 8).delete(provider.held(), "/root");
+
+        assertThat(files.isEmpty(), is(true));
+        assertThat(folders.isEmpty(), is(true));
+    }
+
+    @Test(timeout = 5000)
+    public void freeConnectionsAreGivenBack() throws Exception {
+        final Map<String, byte[]> files = InMemoryProxy.files();
+        final Set<String> folders = InMemoryProxy.folders();
+        tree(files, folders);
+        final InMemoryProvider provider = new InMemoryProvider(files, folders, 3);
+
+        new ParallelTreeDelete(provider, 8).delete(provider.held(), "/root");
+
+        assertThat(files.isEmpty(), is(true));
+        assertThat(folders.isEmpty(), is(true));
+        assertThat(provider.borrowed(), is(0));
+    }
+
+    private static void tree(final Map<String, byte[]> files, final Set<String> folders) {
+        for (int i = 0; i < 5; i++) {
+            final String folder = "/root/d" + i;
+            folders.add(folder);
+            folders.add(folder + "/sub");
+            for (int j = 0; j < 100; j++) {
+                files.put(folder + "/f" + j, new byte[1]);
+                files.put(folder + "/sub/f" + j, new byte[1]);
+            }
+        }
+        for (int j = 0; j < 10; j++) files.put("/root/f" + j, new byte[1]);
+    }
+}
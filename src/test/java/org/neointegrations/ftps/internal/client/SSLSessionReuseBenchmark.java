@@ -0,0 +1,117 @@
+package org.neointegrations.ftps.internal.client;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocket;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of publishing the control connection's TLS session for one data connection, over a pair of loopback
+ * sockets. {@code perConnectionLookup} is what {@code _prepareDataSocket_} did before {@link SSLSessionReuse}:
+ * the reflective lookups, {@code String.format} keys and a reverse DNS lookup of the data address on every data
+ * connection. The JDK session cache is reached by reflection, hence the opened packages.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-XX:+IgnoreUnrecognizedVMOptions",
+        "--add-opens=java.base/sun.security.ssl=ALL-UNNAMED", "--add-opens=java.base/sun.security.util=ALL-UNNAMED"})
+public class SSLSessionReuseBenchmark {
+
+    private SSLServerSocket _controlServer;
+    private SSLSocket _control;
+    private SSLSocket _controlPeer;
+    private ServerSocket _dataServer;
+    private Socket _data;
+    private Socket _dataPeer;
+
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(SSLSessionReuseBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    @Setup
+    public void connect() throws Exception {
+        final InetAddress loopback = InetAddress.getLoopbackAddress();
+        _controlServer = (SSLServerSocket) LoopbackFTPSServer.serverContext().getServerSocketFactory()
+                .createServerSocket(0, 1, loopback);
+        final CompletableFuture<SSLSocket> peer = CompletableFuture.supplyAsync(() -> {
+            try {
+                final SSLSocket socket = (SSLSocket) _controlServer.accept();
+                socket.startHandshake();
+                return socket;
+            } catch (IOException exp) {
+                throw new IllegalStateException(exp);
+            }
+        });
+        _control = (SSLSocket) LoopbackFTPSServer.trustAllContext().getSocketFactory()
+                .createSocket(loopback, _controlServer.getLocalPort());
+        _control.startHandshake();
+        _controlPeer = peer.get(10, TimeUnit.SECONDS);
+
+        // Connected to the address of a PASV reply, which has no host name yet
+        _dataServer = new ServerSocket(0, 1, loopback);
+        _data = new Socket(InetAddress.getByAddress(loopback.getAddress()), _dataServer.getLocalPort());
+        _dataPeer = _dataServer.accept();
+    }
+
+    @TearDown
+    public void close() throws IOException {
+        _data.close();
+        _dataPeer.close();
+        _dataServer.close();
+        _control.close();
+        _controlPeer.close();
+        _controlServer.close();
+    }
+
+    @Benchmark
+    public void share() throws IOException {
+        SSLSessionReuse.share(_control, _data);
+    }
+
+    @Benchmark
+    public void perConnectionLookup() throws Exception {
+        final SSLSession session = _control.getSession();
+        if (!session.isValid()) throw new InvalidSSLSessionException("Invalid SSL Session");
+        final SSLSessionContext context = session.getSessionContext();
+        final Field sessionHostPortCache = context.getClass().getDeclaredField("sessionHostPortCache");
+        sessionHostPortCache.setAccessible(true);
+        final Object cache = sessionHostPortCache.get(context);
+        final Method method = cache.getClass().getDeclaredMethod("put", Object.class, Object.class);
+        method.setAccessible(true);
+        // Every data connection is a new socket, whose address was never resolved to a host name
+        final InetAddress address = InetAddress.getByAddress(_data.getInetAddress().getAddress());
+        method.invoke(cache, String
+                .format("%s:%s", address.getHostName(), String.valueOf(_data.getPort()))
+                .toLowerCase(Locale.ROOT), session);
+        method.invoke(cache, String
+                .format("%s:%s", address.getHostAddress(), String.valueOf(_data.getPort()))
+                .toLowerCase(Locale.ROOT), session);
+    }
+}
@@ -0,0 +1,81 @@
+package org.neointegrations.ftps.internal.client;
+
+import org.junit.Test;
+
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSessionContext;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsSame.sameInstance;
+
+public class SSLSessionReuseTestCase {
+
+    @Test
+    public void keyMatchesTheJdkCacheKey() {
+        assertThat(SSLSessionReuse.key("FTP.Example.com", 990), is("ftp.example.com:990"));
+        assertThat(SSLSessionReuse.key("10.0.0.1", 50021), is("10.0.0.1:50021"));
+    }
+
+    @Test
+    public void cacheIsReachedThroughTheContext() throws IOException {
+        CachingContext context = new CachingContext();
+        assertThat(SSLSessionReuse.cacheOf(context), sameInstance(context.sessionHostPortCache));
+    }
+
+    @Test(expected = IOException.class)
+    public void unsupportedContextFails() throws IOException {
+        SSLSessionReuse.cacheOf(new PlainContext());
+    }
+
+    private static class Cache {
+        private final Map<Object, Object> entries = new HashMap<>();
+
+        private Object get(Object key) {
+            return entries.get(key);
+        }
+
+        private void put(Object key, Object value) {
+            entries.put(key, value);
+        }
+    }
+
+    private static class PlainContext implements SSLSessionContext {
+        @Override
+        public SSLSession getSession(byte[] sessionId) {
+            return null;
+        }
+
+        @Override
+        public Enumeration<byte[]> getIds() {
+            return Collections.emptyEnumeration();
+        }
+
+        @Override
+        public void setSessionTimeout(int seconds) {
+        }
+
+        @Override
+        public int getSessionTimeout() {
+            return 0;
+        }
+
+        @Override
+        public void setSessionCacheSize(int size) {
+        }
+
+        @Override
+        public int getSessionCacheSize() {
+            return 0;
+        }
+    }
+
+    private static class CachingContext extends PlainContext {
+        private final Cache sessionHostPortCache = new Cache();
+    }
+}
@@ -0,0 +1,25 @@
+package org.neointegrations.ftps.internal.client;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class SocketOptionsTestCase {
+
+    @Test
+    public void bufferCoversTwiceTheBandwidthDelayProduct() {
+        SocketOptions options = new SocketOptions(0, 0, true, false, 0, 0, true, 1000);
+        // 1Gbps over 40ms is 5MB in flight
+        assertThat(options.bufferSizeFor(40), is(10_000_000));
+    }
+
+    @Test
+    public void bufferSizeIsBounded() {
+        SocketOptions options = new SocketOptions(0, 0, true, false, 0, 0, true, 10_000);
+        assertThat(options.bufferSizeFor(0.1), is(250_000));
+        assertThat(options.bufferSizeFor(500), is(SocketOptions.MAX_AUTO_BUFFER_SIZE));
+        assertThat(new SocketOptions(0, 0, true, false, 0, 0, true, 1).bufferSizeFor(1),
+                is(SocketOptions.MIN_AUTO_BUFFER_SIZE));
+    }
+}
@@ -0,0 +1,35 @@
+package org.neointegrations.ftps.internal.source;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class AdaptivePollIntervalTestCase {
+
+    @Test
+    public void idlePollsBackOffUpToTheMaximum() {
+        AdaptivePollInterval interval = new AdaptivePollInterval(2000, 10_000);
+        assertThat(interval.isDue(0), is(true));
+        interval.polled(false, 0);
+        assertThat(interval.intervalMillis(), is(4000L));
+        assertThat(interval.isDue(3000), is(false));
+        assertThat(interval.isDue(4000), is(true));
+
+        interval.polled(false, 4000);
+        interval.polled(false, 12_000);
+        assertThat(interval.intervalMillis(), is(10_000L));
+    }
+
+    @Test
+    public void newFilesTightenTheInterval() {
+        AdaptivePollInterval interval = new AdaptivePollInterval(0, 60_000);
+        interval.polled(false, 0);
+        interval.polled(false, 1000);
+        assertThat(interval.intervalMillis(), is(2000L));
+
+        interval.polled(true, 3000);
+        assertThat(interval.intervalMillis(), is(0L));
+        assertThat(interval.isDue(3000), is(true));
+    }
+}
@@ -0,0 +1,71 @@
+package org.neointegrations.ftps.internal.source;
+
+import org.junit.Test;
+import org.mule.runtime.api.store.ObjectStore;
+import org.mule.runtime.api.store.SimpleMemoryObjectStore;
+
+import java.util.Arrays;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class ClusterShardTestCase {
+
+    @Test
+    public void everyPathHasExactlyOneOwner() {
+        ObjectStore<Long> store = new SimpleMemoryObjectStore<>();
+        ClusterShard first = new ClusterShard(store, "node-1", 60_000);
+        ClusterShard second = new ClusterShard(store, "node-2", 60_000);
+        first.heartbeat(1000);
+        second.heartbeat(1000);
+        first.heartbeat(2000);
+
+        int owned = 0;
+        for (int i = 0; i < 1000; i++) {
+            String path = "/in/file-" + i + ".csv";
+            assertThat(first.owns(path) != second.owns(path), is(true));
+            if (first.owns(path)) owned++;
+        }
+        assertThat(Math.abs(owned - 500) < 150, is(true));
+    }
+
+    @Test
+    public void silentNodeIsDropped() {
+        ObjectStore<Long> store = new SimpleMemoryObjectStore<>();
+        ClusterShard first = new ClusterShard(store, "node-1", 60_000);
+        ClusterShard second = new ClusterShard(store, "node-2", 60_000);
+        second.heartbeat(1000);
+        first.heartbeat(2000);
+        assertThat(first.members(), is(2));
+
+        first.heartbeat(100_000);
+        assertThat(first.members(), is(1));
+        assertThat(first.owns("/in/a.csv"), is(true));
+    }
+
+    @Test
+    public void generationChangesWithTheRing() {
+        ObjectStore<Long> store = new SimpleMemoryObjectStore<>();
+        ClusterShard first = new ClusterShard(store, "node-1", 60_000);
+        ClusterShard second = new ClusterShard(store, "node-2", 60_000);
+        first.heartbeat(1000);
+        int generation = first.generation();
+        first.heartbeat(1500);
+        assertThat(first.generation(), is(generation));
+
+        second.heartbeat(2000);
+        first.heartbeat(2000);
+        assertThat(first.generation() != generation, is(true));
+    }
+
+    @Test
+    public void addingAMemberOnlyMovesItsShare() {
+        ConsistentHashRing three = new ConsistentHashRing(Arrays.asList("a", "b", "c"), 128);
+        ConsistentHashRing four = new ConsistentHashRing(Arrays.asList("a", "b", "c", "d"), 128);
+        for (int i = 0; i < 1000; i++) {
+            String path = "/in/file-" + i + ".csv";
+            String owner = four.ownerOf(path);
+            if (!"d".equals(owner)) assertThat(owner, is(three.ownerOf(path)));
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package org.neointegrations.ftps.internal.source;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class FileBatcherTestCase {
+
+    @Test
+    public void batchesAreBoundedByCountAndBytes() {
+        FileBatcher<String> batcher = new FileBatcher<>(3, 100, 0);
+        batcher.add("a", 10, 0);
+        batcher.add("b", 10, 0);
+        batcher.add("c", 10, 0);
+        batcher.add("d", 60, 0);
+        batcher.add("e", 60, 0);
+        batcher.add("f", 500, 0);
+
+        List<List<String>> batches = batcher.takeReady(0);
+        assertThat(batches, is(Arrays.asList(Arrays.asList("a", "b", "c"), Arrays.asList("d"),
+                Arrays.asList("e"), Arrays.asList("f"))));
+        assertThat(batcher.pending(), is(0));
+    }
+
+    @Test
+    public void partialBatchWaitsForTheOldestFile() {
+        FileBatcher<String> batcher = new FileBatcher<>(3, 0, 1000);
+        batcher.add("a", 10, 0);
+        batcher.add("b", 10, 0);
+        assertThat(batcher.takeReady(500).isEmpty(), is(true));
+
+        batcher.add("c", 10, 600);
+        batcher.add("d", 10, 600);
+        assertThat(batcher.takeReady(700), is(Arrays.asList(Arrays.asList("a", "b", "c"))));
+        assertThat(batcher.takeReady(1000).isEmpty(), is(true));
+        assertThat(batcher.takeReady(1600), is(Arrays.asList(Arrays.asList("d"))));
+    }
+}
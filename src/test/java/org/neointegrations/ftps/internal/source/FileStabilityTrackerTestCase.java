@@ -0,0 +1,91 @@
+package org.neointegrations.ftps.internal.source;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class FileStabilityTrackerTestCase {
+
+    @Test
+    public void fileIsStableAfterUnchangedObservations() {
+        FileStabilityTracker tracker = new FileStabilityTracker(2, 1000, 0);
+        tracker.beginPoll();
+        assertThat(tracker.isStable("/in/a.txt", 10, 5000, 10000), is(false));
+        tracker.endPoll();
+
+        tracker.beginPoll();
+        assertThat(tracker.isStable("/in/a.txt", 10, 5000, 12000), is(true));
+        tracker.endPoll();
+    }
+
+    @Test
+    public void changedSizeRestartsTheCount() {
+        FileStabilityTracker tracker = new FileStabilityTracker(2, 0, 0);
+        tracker.beginPoll();
+        tracker.isStable("/in/a.txt", 10, 5000, 10000);
+        tracker.endPoll();
+
+        tracker.beginPoll();
+        assertThat(tracker.isStable("/in/a.txt", 20, 5000, 11000), is(false));
+        tracker.endPoll();
+
+        tracker.beginPoll();
+        assertThat(tracker.isStable("/in/a.txt", 20, 5000, 12000), is(true));
+        tracker.endPoll();
+    }
+
+    @Test
+    public void oldFileIsStableStraightAway() {
+        FileStabilityTracker tracker = new FileStabilityTracker(2, 1000, 60000);
+        tracker.beginPoll();
+        assertThat(tracker.isStable("/in/old.txt", 10, 1000, 120000), is(true));
+        assertThat(tracker.isStable("/in/new.txt", 10, 100000, 120000), is(false));
+        tracker.endPoll();
+    }
+
+    @Test
+    public void emptyFileIsNeverStable() {
+        FileStabilityTracker tracker = new FileStabilityTracker(1, 0, 0);
+        tracker.beginPoll();
+        assertThat(tracker.isStable("/in/empty.txt", 0, 1000, 2000), is(false));
+        tracker.endPoll();
+    }
+
+    @Test
+    public void disappearedFilesAreForgotten() {
+        FileStabilityTracker tracker = new FileStabilityTracker(2, 0, 0);
+        tracker.beginPoll();
+        tracker.isStable("/in/a.txt", 10, 5000, 10000);
+        tracker.isStable("/in/b.txt", 10, 5000, 10000);
+        tracker.endPoll();
+
+        tracker.beginPoll();
+        tracker.isStable("/in/a.txt", 10, 5000, 11000);
+        tracker.endPoll();
+        assertThat(tracker.size(), is(1));
+    }
+
+    @Test
+    public void onlyNewOrChangedFilesCountAsChanged() {
+        FileStabilityTracker tracker = new FileStabilityTracker(2, 0, 0);
+        tracker.beginPoll();
+        tracker.isStable("/in/a.txt", 10, 5000, 10000);
+        tracker.isStable("/in/b.txt", 10, 5000, 10000);
+        assertThat(tracker.changed(), is(2));
+        tracker.endPoll();
+
+        // Unchanged files, e.g. already processed or still in flight, leave the folder idle
+        tracker.beginPoll();
+        tracker.isStable("/in/a.txt", 10, 5000, 11000);
+        tracker.isStable("/in/b.txt", 10, 5000, 11000);
+        assertThat(tracker.changed(), is(0));
+        tracker.endPoll();
+
+        tracker.beginPoll();
+        tracker.isStable("/in/a.txt", 20, 6000, 12000);
+        tracker.isStable("/in/b.txt", 10, 5000, 12000);
+        assertThat(tracker.changed(), is(1));
+        tracker.endPoll();
+    }
+}
@@ -0,0 +1,40 @@
+package org.neointegrations.ftps.internal.source;
+
+import org.junit.Test;
+import org.mule.runtime.api.store.ObjectStore;
+import org.mule.runtime.api.store.SimpleMemoryObjectStore;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class InFlightRegistryTestCase {
+
+    @Test
+    public void fileIsClaimedOnceUntilReleased() {
+        InFlightRegistry registry = new InFlightRegistry(null);
+        String key = InFlightRegistry.keyOf("/in/a.csv", 10, 5000);
+        assertThat(registry.claim(key), is(true));
+        assertThat(registry.claim(key), is(false));
+        // Replaced by a new version meanwhile
+        assertThat(registry.claim(InFlightRegistry.keyOf("/in/a.csv", 20, 6000)), is(true));
+
+        registry.release(key);
+        registry.release(key);
+        assertThat(registry.claim(key), is(true));
+    }
+
+    @Test
+    public void claimIsSharedBetweenNodes() {
+        ObjectStore<Long> store = new SimpleMemoryObjectStore<>();
+        InFlightRegistry first = new InFlightRegistry(store);
+        InFlightRegistry second = new InFlightRegistry(store);
+        String key = InFlightRegistry.keyOf("/in/a.csv", 10, 5000);
+
+        assertThat(first.claim(key), is(true));
+        assertThat(second.claim(key), is(false));
+        assertThat(second.isInFlight(key), is(false));
+
+        first.release(key);
+        assertThat(second.claim(key), is(true));
+    }
+}
@@ -0,0 +1,77 @@
+package org.neointegrations.ftps.internal.source;
+
+import org.junit.Test;
+import org.mule.runtime.api.store.ObjectStore;
+import org.mule.runtime.api.store.SimpleMemoryObjectStore;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class ListingSnapshotTestCase {
+
+    @Test
+    public void onlyNewOrUpdatedFilesAreReported() throws Exception {
+        ListingSnapshot snapshot = new ListingSnapshot(new SimpleMemoryObjectStore<>());
+        snapshot.beginPoll();
+        assertThat(snapshot.isNewOrUpdated("/in/a.txt", 10, 1000), is(true));
+        snapshot.record("/in/a.txt", 10, 1000);
+
+        snapshot.beginPoll();
+        assertThat(snapshot.isNewOrUpdated("/in/a.txt", 10, 1000), is(false));
+        assertThat(snapshot.isNewOrUpdated("/in/a.txt", 10, 2000), is(true));
+        assertThat(snapshot.isNewOrUpdated("/in/a.txt", 11, 1000), is(true));
+    }
+
+    @Test
+    public void snapshotSurvivesReload() throws Exception {
+        ObjectStore<ListingSnapshot.Entry> store = new SimpleMemoryObjectStore<>();
+        new ListingSnapshot(store).record("/in/a.txt", 10, 1000);
+
+        ListingSnapshot reloaded = new ListingSnapshot(store);
+        reloaded.beginPoll();
+        assertThat(reloaded.isNewOrUpdated("/in/a.txt", 10, 1000), is(false));
+    }
+
+    @Test
+    public void compactionDropsFilesMissingFromTheListing() throws Exception {
+        ObjectStore<ListingSnapshot.Entry> store = new SimpleMemoryObjectStore<>();
+        ListingSnapshot snapshot = new ListingSnapshot(store);
+        snapshot.record("/in/a.txt", 10, 1000);
+        snapshot.record("/in/b.txt", 10, 1000);
+
+        snapshot.beginPoll();
+        snapshot.isNewOrUpdated("/in/a.txt", 10, 1000);
+        snapshot.compact();
+
+        assertThat(snapshot.size(), is(1));
+        assertThat(store.contains("/in/b.txt"), is(false));
+    }
+
+    @Test
+    public void filesSkippedByThisNodeSurviveCompaction() throws Exception {
+        ObjectStore<ListingSnapshot.Entry> store = new SimpleMemoryObjectStore<>();
+        ListingSnapshot snapshot = new ListingSnapshot(store);
+        snapshot.record("/in/a.txt", 10, 1000);
+
+        snapshot.beginPoll();
+        snapshot.seen("/in/a.txt");
+        snapshot.compact();
+
+        assertThat(store.contains("/in/a.txt"), is(true));
+    }
+
+    @Test
+    public void reloadPicksTheEntriesOfOtherNodes() throws Exception {
+        ObjectStore<ListingSnapshot.Entry> store = new SimpleMemoryObjectStore<>();
+        ListingSnapshot first = new ListingSnapshot(store);
+        ListingSnapshot second = new ListingSnapshot(store);
+        second.record("/in/a.txt", 10, 1000);
+        first.record("/in/b.txt", 10, 1000);
+        store.remove("/in/b.txt");
+
+        first.reload();
+        first.beginPoll();
+        assertThat(first.isNewOrUpdated("/in/a.txt", 10, 1000), is(false));
+        assertThat(first.isNewOrUpdated("/in/b.txt", 10, 1000), is(true));
+    }
+}
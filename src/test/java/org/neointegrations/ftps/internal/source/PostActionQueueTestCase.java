@@ -0,0 +1,60 @@
+package org.neointegrations.ftps.internal.source;
+
+import org.junit.Test;
+import org.mule.runtime.api.connection.ConnectionException;
+import org.neointegrations.ftps.internal.FTPSConnection;
+import org.neointegrations.ftps.internal.InMemoryProvider;
+import org.neointegrations.ftps.internal.client.InMemoryProxy;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class PostActionQueueTestCase {
+
+    @Test(timeout = 5000)
+    public void refusedActionIsRetriedAndGivenUp() throws Exception {
+        final Map<String, byte[]> files = InMemoryProxy.files();
+        final AtomicInteger deletes = new AtomicInteger();
+        final PostActionQueue queue = new PostActionQueue(provider(files, deletes), 10, 10, 3, 0);
+
+        queue.submit("/in/missing.txt", Collections.singletonList(PostActionQueue.Step.delete("/in/missing.txt")));
+        while (queue.isPending("/in/missing.txt")) Thread.sleep(10);
+        queue.stop(1000);
+
+        assertThat(deletes.get(), is(3));
+    }
+
+    @Test(timeout = 5000)
+    public void appliedActionIsNotRetried() throws Exception {
+        final Map<String, byte[]> files = InMemoryProxy.files();
+        files.put("/in/a.txt", new byte[1]);
+        final AtomicInteger deletes = new AtomicInteger();
+        final PostActionQueue queue = new PostActionQueue(provider(files, deletes), 10, 10, 3, 0);
+
+        queue.submit("/in/a.txt", Collections.singletonList(PostActionQueue.Step.rename("/in/a.txt", "/done/a.txt")));
+        while (queue.isPending("/in/a.txt")) Thread.sleep(10);
+        queue.stop(1000);
+
+        assertThat(files.containsKey("/done/a.txt"), is(true));
+    }
+
+    private static InMemoryProvider provider(final Map<String, byte[]> files, final AtomicInteger deletes)
+            throws ConnectionException {
+        return new InMemoryProvider(files, InMemoryProxy.folders(), 0) {
+            @Override
+            public FTPSConnection connect() throws ConnectionException {
+                return new FTPSConnection(this, new InMemoryProxy(files, InMemoryProxy.folders()) {
+                    @Override
+                    public boolean deleteFile(final String path) {
+                        deletes.incrementAndGet();
+                        return super.deleteFile(path);
+                    }
+                });
+            }
+        };
+    }
+}
@@ -0,0 +1,33 @@
+package org.neointegrations.ftps.internal.source;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class TopKSelectorTestCase {
+
+    @Test
+    public void keepsTheFirstItemsInOrder() {
+        TopKSelector<Long> selector = new TopKSelector<>(Comparator.naturalOrder(), 3, 0, size -> size);
+        for (long size : new long[]{50, 10, 40, 30, 20, 60}) selector.offer(size);
+        assertThat(selector.size(), is(3));
+        assertThat(selector.take(), is(Arrays.asList(10L, 20L, 30L)));
+        assertThat(selector.size(), is(0));
+    }
+
+    @Test
+    public void byteBudgetIsOvershotByTheLastItemOnly() {
+        TopKSelector<Long> selector = new TopKSelector<>(Comparator.naturalOrder(), 0, 50, size -> size);
+        for (long size : new long[]{40, 10, 30, 20, 5}) selector.offer(size);
+        // 5 + 10 + 20 = 35 is short of the budget, 30 fills it
+        assertThat(selector.take(), is(Arrays.asList(5L, 10L, 20L, 30L)));
+
+        selector.offer(500L);
+        selector.offer(600L);
+        assertThat(selector.take(), is(Arrays.asList(500L)));
+    }
+}
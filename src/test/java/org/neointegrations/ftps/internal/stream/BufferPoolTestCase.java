@@ -0,0 +1,26 @@
+package org.neointegrations.ftps.internal.stream;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsSame.sameInstance;
+
+public class BufferPoolTestCase {
+
+    @Test
+    public void releasedBuffersAreReused() {
+        byte[] buffer = BufferPool.acquire(12345);
+        assertThat(buffer.length, is(12345));
+        BufferPool.release(buffer);
+        assertThat(BufferPool.acquire(12345), is(sameInstance(buffer)));
+    }
+
+    @Test
+    public void buffersAreOnlyReusedForTheSameSize() {
+        byte[] buffer = BufferPool.acquire(23456);
+        BufferPool.release(buffer);
+        assertThat(BufferPool.acquire(23457).length, is(23457));
+        assertThat(BufferPool.acquire(23456), is(sameInstance(buffer)));
+    }
+}
@@ -0,0 +1,83 @@
+package org.neointegrations.ftps.internal.stream;
+
+import org.junit.Test;
+import org.mule.runtime.extension.api.runtime.operation.Result;
+import org.neointegrations.ftps.api.FTPSFileStatus;
+import org.neointegrations.ftps.internal.FTPSConnection;
+import org.neointegrations.ftps.internal.InMemoryProvider;
+import org.neointegrations.ftps.internal.client.InMemoryProxy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class BulkDownloadTestCase {
+
+    @Test(timeout = 5000)
+    public void readsOverTheCallersConnectionWhenThePoolIsFull() throws Exception {
+        final Map<String, byte[]> files = InMemoryProxy.files();
+        for (String name : Arrays.asList("a.txt", "b.txt", "c.txt")) {
+            files.put("/in/" + name, name.getBytes(StandardCharsets.UTF_8));
+        }
+        final InMemoryProvider provider = new InMemoryProvider(files, InMemoryProxy.folders(), 0);
+
+        final List<Result<InputStream, FTPSFileStatus>> results = new BulkDownload(provider, "/in", 8, false)
+                .download(provider.held(), Arrays.asList("a.txt", "missing.txt", "c.txt"));
+
+        assertThat(read(results.get(0)), is("a.txt"));
+        assertThat(results.get(1).getAttributes().get().isSuccess(), is(false));
+        assertThat(read(results.get(2)), is("c.txt"));
+    }
+
+    @Test(timeout = 5000)
+    public void freeConnectionsAreGivenBack() throws Exception {
+        final Map<String, byte[]> files = InMemoryProxy.files();
+        for (int i = 0; i < 20; i++) files.put("/in/" + i, ("file " + i).getBytes(StandardCharsets.UTF_8));
+        final InMemoryProvider provider = new InMemoryProvider(files, InMemoryProxy.folders(), 3);
+
+        final String[] names = new String[20];
+        for (int i = 0; i < names.length; i++) names[i] = String.valueOf(i);
+        final List<Result<InputStream, FTPSFileStatus>> results = new BulkDownload(provider, "/in", 8, true)
+                .download(provider.held(), Arrays.asList(names));
+
+        for (int i = 0; i < names.length; i++) assertThat(read(results.get(i)), is("file " + i));
+        assertThat(files.isEmpty(), is(true));
+        assertThat(provider.borrowed(), is(0));
+    }
+
+    @Test(timeout = 5000)
+    public void unconfirmedTransferFailsTheFile() throws Exception {
+        final Map<String, byte[]> files = InMemoryProxy.files();
+        files.put("/in/a.txt", "a.txt".getBytes(StandardCharsets.UTF_8));
+        final InMemoryProvider provider = new InMemoryProvider(files, InMemoryProxy.folders(), 0);
+        final FTPSConnection held = new FTPSConnection(provider, new InMemoryProxy(files, InMemoryProxy.folders()) {
+            @Override
+            public boolean completePendingCommand() {
+                return false;
+            }
+        });
+
+        final List<Result<InputStream, FTPSFileStatus>> results = new BulkDownload(provider, "/in", 1, true)
+                .download(held, Collections.singletonList("a.txt"));
+
+        assertThat(results.get(0).getAttributes().get().isSuccess(), is(false));
+        assertThat(files.containsKey("/in/a.txt"), is(true));
+    }
+
+    private static String read(final Result<InputStream, FTPSFileStatus> result) throws IOException {
+        try (InputStream in = result.getOutput()) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            int read;
+            while ((read = in.read()) != -1) out.write(read);
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package org.neointegrations.ftps.internal.stream;
+
+import org.junit.Test;
+import org.mule.runtime.api.streaming.CursorProvider;
+import org.mule.runtime.api.streaming.bytes.CursorStream;
+import org.mule.runtime.api.streaming.bytes.CursorStreamProvider;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class BulkUploadTestCase {
+
+    @Test
+    public void everyValueOfADataWeaveMapBecomesAStream() throws IOException {
+        // What "output application/java --- { 'a.txt': 'text', 'b.bin': ..., 'c.csv': payload }" hands over
+        final Map<String, Object> files = new LinkedHashMap<>();
+        files.put("a.txt", "text");
+        files.put("b.bin", "binary".getBytes(StandardCharsets.UTF_8));
+        files.put("c.csv", new BytesCursorStreamProvider("streamed"));
+        files.put("d.txt", new ByteArrayInputStream("stream".getBytes(StandardCharsets.UTF_8)));
+
+        final Map<String, String> contents = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> file : files.entrySet()) {
+            try (InputStream content = BulkUpload.contentOf(file.getValue())) {
+                contents.put(file.getKey(), read(content));
+            }
+        }
+        assertThat(contents.get("a.txt"), is("text"));
+        assertThat(contents.get("b.bin"), is("binary"));
+        assertThat(contents.get("c.csv"), is("streamed"));
+        assertThat(contents.get("d.txt"), is("stream"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unsupportedContentIsRejected() {
+        BulkUpload.contentOf(42);
+    }
+
+    private static String read(final InputStream in) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[4];
+        int read;
+        while ((read = in.read(buffer)) != -1) out.write(buffer, 0, read);
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static final class BytesCursorStreamProvider implements CursorStreamProvider {
+        private final byte[] _content;
+        private boolean _closed = false;
+
+        private BytesCursorStreamProvider(final String content) {
+            this._content = content.getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public CursorStream openCursor() {
+            final CursorStreamProvider provider = this;
+            return new CursorStream() {
+                private int _position = 0;
+                private boolean _released = false;
+
+                @Override
+                public int read() {
+                    return _position < _content.length ? _content[_position++] & 0xff : -1;
+                }
+
+                @Override
+                public long getPosition() {
+                    return _position;
+                }
+
+                @Override
+                public void seek(final long position) {
+                    _position = (int) position;
+                }
+
+                @Override
+                public void release() {
+                    _released = true;
+                }
+
+                @Override
+                public boolean isReleased() {
+                    return _released;
+                }
+
+                @Override
+                public CursorProvider getProvider() {
+                    return provider;
+                }
+
+                @Override
+                public void close() {
+                    release();
+                }
+            };
+        }
+
+        @Override
+        public void close() {
+            _closed = true;
+        }
+
+        @Override
+        public void releaseResources() {
+        }
+
+        @Override
+        public boolean isClosed() {
+            return _closed;
+        }
+    }
+}
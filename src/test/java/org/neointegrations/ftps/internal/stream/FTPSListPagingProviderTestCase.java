@@ -0,0 +1,116 @@
+package org.neointegrations.ftps.internal.stream;
+
+import org.junit.Test;
+import org.mule.runtime.api.connection.ConnectionException;
+import org.mule.runtime.extension.api.runtime.operation.Result;
+import org.neointegrations.ftps.api.FTPSFileAttributes;
+import org.neointegrations.ftps.internal.FTPSConnection;
+import org.neointegrations.ftps.internal.InMemoryProvider;
+import org.neointegrations.ftps.internal.client.InMemoryProxy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class FTPSListPagingProviderTestCase {
+
+    private static final String LIST =
+            "total 28\r\n" +
+            "drwxr-xr-x   2 ftp ftp     4096 Jan 01 10:00 archive\r\n" +
+            "-rw-r--r--   1 ftp ftp      101 Jan 01 10:01 a.txt\r\n" +
+            "-rw-r--r--   1 ftp ftp      102 Jan 01 10:02 b.txt\r\n" +
+            "not a listing entry\r\n" +
+            "-rw-r--r--   1 ftp ftp      103 Jan 01 10:03 c.txt\r\n" +
+            "-rw-r--r--   1 ftp ftp      104 Jan 01 10:04 __d.txt.part\r\n" +
+            "-rw-r--r--   1 ftp ftp      105 Jan 01 10:05 e.txt\r\n" +
+            "-rw-r--r--   1 ftp ftp      106 Jan 01 10:06 f.txt\r\n" +
+            "-rw-r--r--   1 ftp ftp      107 Jan 01 10:07 g.txt\r\n";
+
+    private static final String MLSD =
+            "type=cdir;modify=20260101100000; .\r\n" +
+            "type=pdir;modify=20260101100000; ..\r\n" +
+            "type=dir;modify=20260101100000; archive\r\n" +
+            "type=file;size=101;modify=20260101100100; a.txt\r\n" +
+            "type=file;size=102;modify=20260101100200; b.txt\r\n" +
+            "type=file;size=oops;modify=20260101100300 c.txt\r\n" +
+            "type=file;size=104;modify=20260101100400; d.txt\r\n" +
+            "type=file;size=105;modify=20260101100500; e.txt\r\n";
+
+    @Test
+    public void listOutputIsHandedOutInPagesOfPageSize() throws Exception {
+        final InMemoryProxy proxy = proxy(LIST, false);
+        final FTPSConnection connection = connection(proxy);
+        final FTPSListPagingProvider provider = provider(3);
+
+        // Folders, unparsable lines and files with a "__" name are left out
+        assertThat(names(provider.getPage(connection)), is(Arrays.asList("a.txt", "b.txt", "c.txt")));
+        assertThat(names(provider.getPage(connection)), is(Arrays.asList("e.txt", "f.txt", "g.txt")));
+        assertThat(proxy.completedListings(), is(0));
+        assertThat(provider.getPage(connection).isEmpty(), is(true));
+        assertThat(proxy.completedListings(), is(1));
+
+        provider.close(connection);
+        assertThat(proxy.completedListings(), is(1));
+    }
+
+    @Test
+    public void mlsdOutputIsHandedOutInPagesOfPageSize() throws Exception {
+        final InMemoryProxy proxy = proxy(MLSD, true);
+        final FTPSConnection connection = connection(proxy);
+        final FTPSListPagingProvider provider = provider(2);
+
+        // The cdir and pdir entries are not files, the entry without a separator before its name does not parse
+        final List<Result<LazyInputStream, FTPSFileAttributes>> first = provider.getPage(connection);
+        assertThat(names(first), is(Arrays.asList("a.txt", "b.txt")));
+        assertThat(first.get(1).getAttributes().get().getSize(), is(102L));
+        assertThat(names(provider.getPage(connection)), is(Arrays.asList("d.txt", "e.txt")));
+        assertThat(provider.getPage(connection).isEmpty(), is(true));
+        assertThat(proxy.completedListings(), is(1));
+    }
+
+    @Test
+    public void listingClosedMidwayIsCompletedOnce() throws Exception {
+        final InMemoryProxy proxy = proxy(LIST, false);
+        final FTPSConnection connection = connection(proxy);
+        final FTPSListPagingProvider provider = provider(2);
+
+        assertThat(provider.getPage(connection).size(), is(2));
+        provider.close(connection);
+        provider.close(connection);
+        assertThat(proxy.completedListings(), is(1));
+    }
+
+    @Test
+    public void matcherFiltersTheEntries() throws Exception {
+        final InMemoryProxy proxy = proxy(LIST, false);
+        final FTPSListPagingProvider provider = new FTPSListPagingProvider("/in",
+                attrs -> attrs.getSize() % 2 == 0, false, false, 10);
+        assertThat(names(provider.getPage(connection(proxy))), is(Arrays.asList("b.txt", "f.txt")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void pageSizeMustBePositive() {
+        provider(0);
+    }
+
+    private static FTPSListPagingProvider provider(final int pageSize) {
+        return new FTPSListPagingProvider("/in", attrs -> true, false, false, pageSize);
+    }
+
+    private static InMemoryProxy proxy(final String listing, final boolean machineListing) throws ConnectionException {
+        return new InMemoryProxy(InMemoryProxy.files(), InMemoryProxy.folders()).withListing(listing, machineListing);
+    }
+
+    private static FTPSConnection connection(final InMemoryProxy proxy) throws ConnectionException {
+        return new FTPSConnection(new InMemoryProvider(InMemoryProxy.files(), InMemoryProxy.folders(), 0), proxy);
+    }
+
+    private static List<String> names(final List<Result<LazyInputStream, FTPSFileAttributes>> page) {
+        final List<String> names = new ArrayList<>();
+        for (Result<LazyInputStream, FTPSFileAttributes> result : page) names.add(result.getAttributes().get().getName());
+        return names;
+    }
+}
@@ -0,0 +1,172 @@
+package org.neointegrations.ftps.internal.stream;
+
+import org.mule.runtime.api.connection.ConnectionException;
+import org.neointegrations.ftps.internal.FTPSConnection;
+import org.neointegrations.ftps.internal.InMemoryProvider;
+import org.neointegrations.ftps.internal.client.InMemoryProxy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read throughput of {@link LazyInputStream} over a loopback data connection, in MB/s: every operation is one
+ * byte of the file, so ops/us reads as MB/s.
+ * <p>
+ * {@code singleByteReadsOfTheDataConnection} is what {@code read(byte[])} did before it was buffered: one
+ * {@code read()} of the data connection per call. The other benchmarks read the same file through the buffered
+ * stream with single bytes, arrays smaller than the buffer, and arrays big enough to bypass it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@OperationsPerInvocation(LazyInputStreamBenchmark.FILE_SIZE)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LazyInputStreamBenchmark {
+    static final int FILE_SIZE = 8 * 1024 * 1024;
+
+    @Param({"8192", "65536"})
+    public int bufferSizeInBytes;
+
+    private final byte[] _content = new byte[FILE_SIZE];
+    private ServerSocket _server;
+    private Thread _sender;
+    private InMemoryProvider _provider;
+
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(LazyInputStreamBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    @Setup
+    public void start() throws IOException, ConnectionException {
+        for (int i = 0; i < _content.length; i++) _content[i] = (byte) i;
+        _server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        // Sends the whole file on every data connection, as RETR would
+        _sender = new Thread(() -> {
+            while (!_server.isClosed()) {
+                try (Socket socket = _server.accept(); OutputStream out = socket.getOutputStream()) {
+                    out.write(_content);
+                } catch (IOException ignored) {
+                    // Closed at tear down, or the reader went away
+                }
+            }
+        }, "benchmark-data-server");
+        _sender.setDaemon(true);
+        _sender.start();
+
+        final int port = _server.getLocalPort();
+        final int bufferSize = bufferSizeInBytes;
+        _provider = new InMemoryProvider(InMemoryProxy.files(), InMemoryProxy.folders(), 0) {
+            @Override
+            public FTPSConnection connect() throws ConnectionException {
+                return new FTPSConnection(this, new LoopbackProxy(port));
+            }
+
+            @Override
+            public int getBufferSizeInBytes() {
+                return bufferSize;
+            }
+        };
+    }
+
+    @TearDown
+    public void stop() throws IOException, InterruptedException {
+        _server.close();
+        _sender.join(1000);
+    }
+
+    @Benchmark
+    public long singleByteReadsOfTheDataConnection() throws IOException {
+        long sum = 0;
+        try (InputStream in = new LoopbackProxy(_server.getLocalPort()).retrieveFileStream("/in/a.bin", 0)) {
+            int read;
+            while ((read = in.read()) != -1) sum += read;
+        } catch (ConnectionException exp) {
+            throw new IllegalStateException(exp);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long singleByteReads() throws IOException {
+        long sum = 0;
+        try (LazyInputStream in = stream()) {
+            int read;
+            while ((read = in.read()) != -1) sum += read;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long smallArrayReads() throws IOException {
+        return readInto(new byte[1024]);
+    }
+
+    @Benchmark
+    public long bulkReads() throws IOException {
+        return readInto(new byte[128 * 1024]);
+    }
+
+    private long readInto(final byte[] buffer) throws IOException {
+        long total = 0;
+        try (LazyInputStream in = stream()) {
+            int read;
+            while ((read = in.read(buffer)) != -1) total += read;
+        }
+        return total;
+    }
+
+    private LazyInputStream stream() {
+        try {
+            return new LazyInputStream("/in", "a.bin", false, _provider, false, LocalDateTime.now())
+                    .withExpectedSize(FILE_SIZE);
+        } catch (ConnectionException exp) {
+            throw new IllegalStateException(exp);
+        }
+    }
+
+    /**
+     * Opens every data connection to the loopback sender.
+     */
+    private static final class LoopbackProxy extends InMemoryProxy {
+        private final int _port;
+
+        private LoopbackProxy(final int port) throws ConnectionException {
+            super(InMemoryProxy.files(), InMemoryProxy.folders());
+            this._port = port;
+        }
+
+        @Override
+        public InputStream retrieveFileStream(final String path, final long offset) {
+            try {
+                return new Socket(InetAddress.getLoopbackAddress(), _port).getInputStream();
+            } catch (IOException exp) {
+                throw new UncheckedIOException(exp);
+            }
+        }
+    }
+}
@@ -0,0 +1,377 @@
+package org.neointegrations.ftps.internal.stream;
+
+import org.junit.Test;
+import org.mule.runtime.api.connection.ConnectionException;
+import org.neointegrations.ftps.internal.FTPSConnection;
+import org.neointegrations.ftps.internal.InMemoryProvider;
+import org.neointegrations.ftps.internal.client.InMemoryProxy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.fail;
+
+public class LazyInputStreamTestCase {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    @Test
+    public void readsIntoWholeArrays() throws Exception {
+        final byte[] content = content(3 * BUFFER_SIZE + 17);
+        try (LazyInputStream in = stream(content, BUFFER_SIZE)) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[1000];
+            int read;
+            while ((read = in.read(buffer)) != -1) out.write(buffer, 0, read);
+            assertThat(out.toByteArray(), is(content));
+        }
+    }
+
+    @Test
+    public void readsAtAnOffsetOfTheArray() throws Exception {
+        final byte[] content = content(100);
+        try (LazyInputStream in = stream(content, BUFFER_SIZE)) {
+            final byte[] buffer = new byte[120];
+            Arrays.fill(buffer, (byte) -1);
+            int total = 0;
+            int read;
+            while ((read = in.read(buffer, 10 + total, 110 - total)) > 0) total += read;
+
+            assertThat(total, is(100));
+            assertThat(buffer[9], is((byte) -1));
+            assertThat(Arrays.copyOfRange(buffer, 10, 110), is(content));
+            assertThat(buffer[110], is((byte) -1));
+        }
+    }
+
+    @Test
+    public void singleByteAndArrayReadsMixAcrossRefills() throws Exception {
+        final byte[] content = content(5 * BUFFER_SIZE + 3);
+        try (LazyInputStream in = stream(content, BUFFER_SIZE)) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] small = new byte[100];
+            final byte[] big = new byte[2 * BUFFER_SIZE];
+            int step = 0;
+            while (true) {
+                int read;
+                if (step % 3 == 0) {
+                    // Crosses the end of the buffer every so often
+                    read = in.read();
+                    if (read == -1) break;
+                    out.write(read);
+                } else if (step % 3 == 1) {
+                    read = in.read(small, 0, small.length);
+                    if (read == -1) break;
+                    out.write(small, 0, read);
+                } else {
+                    // Bigger than the buffer, read straight from the data connection once the buffer is empty
+                    read = in.read(big, 0, big.length);
+                    if (read == -1) break;
+                    out.write(big, 0, read);
+                }
+                step++;
+            }
+            assertThat(out.toByteArray(), is(content));
+        }
+    }
+
+    @Test
+    public void endOfStreamIsReportedOnEveryRead() throws Exception {
+        try (LazyInputStream in = stream(content(10), BUFFER_SIZE)) {
+            assertThat(in.read(new byte[20]), is(10));
+            assertThat(in.read(), is(-1));
+            assertThat(in.read(new byte[20]), is(-1));
+            assertThat(in.read(new byte[20], 5, 10), is(-1));
+            assertThat(in.read(new byte[20], 0, 0), is(0));
+        }
+    }
+
+    @Test
+    public void emptyFileEndsAtOnce() throws Exception {
+        try (LazyInputStream in = stream(new byte[0], BUFFER_SIZE)) {
+            assertThat(in.read(), is(-1));
+            assertThat(in.read(new byte[20]), is(-1));
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void readOutsideTheArrayIsRejected() throws Exception {
+        try (LazyInputStream in = stream(content(10), BUFFER_SIZE)) {
+            in.read(new byte[20], 15, 10);
+        }
+    }
+
+    @Test
+    public void bufferIsReleasedOnClose() throws Exception {
+        // A size of its own, so no other stream shares the pooled buffers
+        final int size = BUFFER_SIZE + 4321;
+        final byte[] content = content(2 * size);
+        final LazyInputStream in = stream(content, size);
+        assertThat(in.read(), is(content[0] & 0xff));
+        in.close();
+
+        // The pooled buffer still holds what it was filled with
+        final byte[] released = BufferPool.acquire(size);
+        assertThat(Arrays.copyOf(released, size), is(Arrays.copyOf(content, size)));
+    }
+
+    @Test
+    public void brokenTransferResumesWhereItBroke() throws Exception {
+        final Server server = new Server(content(3 * BUFFER_SIZE + 17));
+        server.brokenTransfers = 1;
+        server.breakAfter = BUFFER_SIZE + 100;
+        try (LazyInputStream in = server.stream(1, true)) {
+            assertThat(readAll(in), is(server.content));
+        }
+        assertThat(server.offsets, is(Arrays.asList(0L, (long) BUFFER_SIZE + 100)));
+        assertThat(server.exists(), is(false));
+    }
+
+    @Test
+    public void refusedRestartFailsTheReadAndKeepsTheFile() throws Exception {
+        final Server server = new Server(content(3 * BUFFER_SIZE));
+        server.brokenTransfers = 1;
+        server.breakAfter = BUFFER_SIZE;
+        server.refuseRestart = true;
+        final LazyInputStream in = server.stream(3, true);
+        try {
+            readAll(in);
+            fail("A transfer which can not be restarted must fail");
+        } catch (IOException expected) {
+            // The cause of the break is reported
+        } finally {
+            in.close();
+        }
+        assertThat(server.offsets.size(), is(1));
+        assertThat(server.exists(), is(true));
+    }
+
+    @Test
+    public void resumesAreCountedOverTheWholeTransfer() throws Exception {
+        final Server server = new Server(content(10 * BUFFER_SIZE));
+        // Every transfer makes progress before it breaks
+        server.brokenTransfers = Integer.MAX_VALUE;
+        server.breakAfter = BUFFER_SIZE;
+        final LazyInputStream in = server.stream(2, true);
+        try {
+            readAll(in);
+            fail("The resumes must run out");
+        } catch (IOException expected) {
+            // Given up after the last attempt
+        } finally {
+            in.close();
+        }
+        assertThat(server.offsets, is(Arrays.asList(0L, (long) BUFFER_SIZE, 2L * BUFFER_SIZE)));
+        assertThat(server.exists(), is(true));
+    }
+
+    @Test
+    public void unconfirmedTransferIsResumed() throws Exception {
+        final Server server = new Server(content(2 * BUFFER_SIZE + 5));
+        server.brokenTransfers = 1;
+        server.breakAfter = BUFFER_SIZE + 5;
+        server.abort = true;
+        try (LazyInputStream in = server.stream(1, true)) {
+            assertThat(readAll(in), is(server.content));
+        }
+        assertThat(server.offsets, is(Arrays.asList(0L, (long) BUFFER_SIZE + 5)));
+        assertThat(server.exists(), is(false));
+    }
+
+    @Test
+    public void unconfirmedTransferIsNotTakenForTheEndOfTheFile() throws Exception {
+        final Server server = new Server(content(2 * BUFFER_SIZE));
+        server.brokenTransfers = 1;
+        server.breakAfter = BUFFER_SIZE;
+        server.abort = true;
+        final LazyInputStream in = server.stream(0, true);
+        try {
+            readAll(in);
+            fail("A transfer the server aborted must fail");
+        } catch (IOException expected) {
+            // Not resumed
+        } finally {
+            in.close();
+        }
+        assertThat(server.exists(), is(true));
+    }
+
+    @Test
+    public void transferShorterThanTheListedSizeIsResumed() throws Exception {
+        final Server server = new Server(content(2 * BUFFER_SIZE));
+        server.brokenTransfers = 1;
+        server.breakAfter = 100;
+        server.abort = true;
+        // The data connection closed cleanly and the server confirmed it anyway
+        server.confirmAborted = true;
+        try (LazyInputStream in = server.stream(1, true).withExpectedSize(server.content.length)) {
+            assertThat(readAll(in), is(server.content));
+        }
+        assertThat(server.offsets, is(Arrays.asList(0L, 100L)));
+    }
+
+    @Test
+    public void unconfirmedPrefetchIsReadOnDemand() throws Exception {
+        final Server server = new Server(content(2 * BUFFER_SIZE));
+        server.brokenTransfers = 1;
+        server.breakAfter = BUFFER_SIZE;
+        server.abort = true;
+        final AtomicInteger released = new AtomicInteger();
+        try (LazyInputStream in = server.stream(0, true)) {
+            assertThat(in.prefetch(Integer.MAX_VALUE, released::incrementAndGet), is(false));
+            assertThat(readAll(in), is(server.content));
+        }
+        assertThat(server.offsets, is(Arrays.asList(0L, 0L)));
+        assertThat(released.get(), is(0));
+        assertThat(server.exists(), is(false));
+    }
+
+    @Test
+    public void prefetchShorterThanTheListedSizeIsReadOnDemand() throws Exception {
+        final Server server = new Server(content(2 * BUFFER_SIZE));
+        server.brokenTransfers = 1;
+        server.breakAfter = 100;
+        server.abort = true;
+        server.confirmAborted = true;
+        try (LazyInputStream in = server.stream(0, false).withExpectedSize(server.content.length)) {
+            assertThat(in.prefetch(Integer.MAX_VALUE, () -> { }), is(false));
+            assertThat(readAll(in), is(server.content));
+        }
+    }
+
+    private static byte[] readAll(final InputStream in) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[1000];
+        int read;
+        while ((read = in.read(buffer)) != -1) out.write(buffer, 0, read);
+        return out.toByteArray();
+    }
+
+    private static LazyInputStream stream(final byte[] content, final int bufferSize) throws ConnectionException {
+        final Map<String, byte[]> files = InMemoryProxy.files();
+        files.put("/in/a.bin", content);
+        final InMemoryProvider provider = new InMemoryProvider(files, InMemoryProxy.folders(), 0) {
+            @Override
+            public FTPSConnection connect() throws ConnectionException {
+                return held();
+            }
+
+            @Override
+            public int getBufferSizeInBytes() {
+                return bufferSize;
+            }
+        };
+        return new LazyInputStream("/in", "a.bin", false, provider, false, LocalDateTime.now());
+    }
+
+    private static byte[] content(final int size) {
+        final byte[] content = new byte[size];
+        for (int i = 0; i < size; i++) content[i] = (byte) (i * 13 + i / 256);
+        return content;
+    }
+
+    /**
+     * A server whose first transfers break, by failing or by ending early, after a number of bytes.
+     */
+    private static final class Server {
+        private final Map<String, byte[]> files = InMemoryProxy.files();
+        private final byte[] content;
+        // The REST offset of every transfer opened
+        private final List<Long> offsets = new CopyOnWriteArrayList<>();
+        private int brokenTransfers = 0;
+        private int breakAfter = 0;
+        // A broken transfer ends cleanly and is not confirmed, instead of failing
+        private boolean abort = false;
+        private boolean confirmAborted = false;
+        private boolean refuseRestart = false;
+
+        private Server(final byte[] content) {
+            this.content = content;
+            files.put("/in/a.bin", content);
+        }
+
+        private boolean exists() {
+            return files.containsKey("/in/a.bin");
+        }
+
+        private LazyInputStream stream(final int resumeAttempts, final boolean deleteAfterRead)
+                throws ConnectionException {
+            final Server server = this;
+            final InMemoryProvider provider = new InMemoryProvider(files, InMemoryProxy.folders(), 0) {
+                @Override
+                public FTPSConnection connect() throws ConnectionException {
+                    return new FTPSConnection(this, new FlakyProxy(server));
+                }
+
+                @Override
+                public int getBufferSizeInBytes() {
+                    return BUFFER_SIZE;
+                }
+
+                @Override
+                public int getResumeAttempts() {
+                    return resumeAttempts;
+                }
+
+                @Override
+                public long getResumeBackoffMillis() {
+                    return 0;
+                }
+            };
+            return new LazyInputStream("/in", "a.bin", deleteAfterRead, provider, false, LocalDateTime.now());
+        }
+    }
+
+    private static final class FlakyProxy extends InMemoryProxy {
+        private final Server _server;
+        private boolean _broken = false;
+
+        private FlakyProxy(final Server server) throws ConnectionException {
+            super(server.files, InMemoryProxy.folders());
+            this._server = server;
+        }
+
+        @Override
+        public InputStream retrieveFileStream(final String path, final long offset) {
+            if (offset > 0 && _server.refuseRestart) return null;
+            _server.offsets.add(offset);
+            final InputStream in = super.retrieveFileStream(path, offset);
+            _broken = _server.offsets.size() <= _server.brokenTransfers;
+            if (!_broken) return in;
+            return new FilterInputStream(in) {
+                private int _sent = 0;
+
+                @Override
+                public int read(final byte[] b, final int off, final int len) throws IOException {
+                    if (_sent >= _server.breakAfter) {
+                        if (_server.abort) return -1;
+                        throw new IOException("Connection reset");
+                    }
+                    final int count = super.read(b, off, Math.min(len, _server.breakAfter - _sent));
+                    if (count > 0) _sent += count;
+                    return count;
+                }
+            };
+        }
+
+        @Override
+        public boolean completePendingCommand() {
+            return !_broken || !_server.abort || _server.confirmAborted;
+        }
+
+        @Override
+        public String getReplyString() {
+            return "426 Connection closed; transfer aborted";
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package org.neointegrations.ftps.internal.stream;
+
+import org.junit.Test;
+import org.neointegrations.ftps.internal.FTPSConnection;
+import org.neointegrations.ftps.internal.client.InMemoryProxy;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class ResumableUploadTestCase {
+
+    private static final String PATH = "/out/a.bin";
+
+    @Test
+    public void abortedTransferIsResumed() throws Exception {
+        final Map<String, byte[]> files = InMemoryProxy.files();
+        final BreakingProxy proxy = new BreakingProxy(files, 426, false);
+
+        final boolean stored = new ResumableUpload(PATH, 3, 0).upload(new FTPSConnection(null, proxy),
+                new ByteArrayInputStream(content(10_000)));
+
+        assertThat(stored, is(true));
+        assertThat(files.get(PATH), is(content(10_000)));
+        assertThat(proxy.resumedAt, is(4096L));
+    }
+
+    @Test
+    public void brokenConnectionIsResumed() throws Exception {
+        final Map<String, byte[]> files = InMemoryProxy.files();
+        final BreakingProxy proxy = new BreakingProxy(files, 0, true);
+
+        new ResumableUpload(PATH, 3, 0).upload(new FTPSConnection(null, proxy),
+                new ByteArrayInputStream(content(10_000)));
+
+        assertThat(files.get(PATH), is(content(10_000)));
+        assertThat(proxy.resumedAt, is(4096L));
+    }
+
+    @Test
+    public void permanentRefusalIsNotRetried() throws Exception {
+        final BreakingProxy proxy = new BreakingProxy(InMemoryProxy.files(), 553, false);
+
+        final boolean stored = new ResumableUpload(PATH, 3, 0).upload(new FTPSConnection(null, proxy),
+                new ByteArrayInputStream(content(10_000)));
+
+        assertThat(stored, is(false));
+        assertThat(proxy.resumedAt, is(-1L));
+    }
+
+    private static byte[] content(final int size) {
+        final byte[] content = new byte[size];
+        for (int i = 0; i < size; i++) content[i] = (byte) (i * 7);
+        return content;
+    }
+
+    /**
+     * Stores the first 4096 bytes of the first transfer and then fails it, with a reply or with an exception.
+     */
+    private static final class BreakingProxy extends InMemoryProxy {
+        private final int _failureReply;
+        private final boolean _throw;
+        private boolean _broken = false;
+        private int _reply = 226;
+        private long resumedAt = -1;
+
+        private BreakingProxy(final Map<String, byte[]> files, final int failureReply, final boolean throwOnFailure)
+                throws Exception {
+            super(files, InMemoryProxy.folders());
+            this._failureReply = failureReply;
+            this._throw = throwOnFailure;
+        }
+
+        @Override
+        public boolean storeFile(final String path, final InputStream stream, final long offset) throws IOException {
+            if (_broken) {
+                resumedAt = offset;
+                _reply = 226;
+                return super.storeFile(path, stream, offset);
+            }
+            _broken = true;
+            final byte[] partial = new byte[4096];
+            int read = 0;
+            while (read < partial.length) read += stream.read(partial, read, partial.length - read);
+            super.storeFile(path, new ByteArrayInputStream(partial), 0);
+            if (_throw) throw new IOException("Connection reset");
+            _reply = _failureReply;
+            return false;
+        }
+
+        @Override
+        public int getReplyCode() {
+            return _reply;
+        }
+    }
+}
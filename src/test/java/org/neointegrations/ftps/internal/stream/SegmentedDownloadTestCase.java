@@ -0,0 +1,52 @@
+package org.neointegrations.ftps.internal.stream;
+
+import org.junit.Test;
+import org.neointegrations.ftps.internal.FTPSConnection;
+import org.neointegrations.ftps.internal.InMemoryProvider;
+import org.neointegrations.ftps.internal.client.InMemoryProxy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+
+public class SegmentedDownloadTestCase {
+
+    private static final String PATH = "/in/big.bin";
+
+    @Test(timeout = 5000)
+    public void readsWithASingleConnectionWhenThePoolIsFull() throws Exception {
+        final Map<String, byte[]> files = InMemoryProxy.files();
+        files.put(PATH, content(100));
+        final InMemoryProvider provider = new InMemoryProvider(files, InMemoryProxy.folders(), 0);
+        final FTPSConnection held = provider.held();
+
+        assertThat(new SegmentedDownload(provider, PATH, 10, 8, 8192).download(held), is(nullValue()));
+    }
+
+    @Test(timeout = 5000)
+    public void segmentsAreSpreadOverTheFreeConnections() throws Exception {
+        final Map<String, byte[]> files = InMemoryProxy.files();
+        files.put(PATH, content(1000));
+        final InMemoryProvider provider = new InMemoryProvider(files, InMemoryProxy.folders(), 2);
+        final FTPSConnection held = provider.held();
+
+        try (InputStream in = new SegmentedDownload(provider, PATH, 64, 8, 8192).download(held)) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[256];
+            int read;
+            while ((read = in.read(buffer)) != -1) out.write(buffer, 0, read);
+            assertThat(out.toByteArray(), is(content(1000)));
+        }
+        assertThat(provider.borrowed(), is(0));
+    }
+
+    private static byte[] content(final int size) {
+        final byte[] content = new byte[size];
+        for (int i = 0; i < size; i++) content[i] = (byte) (i * 31);
+        return content;
+    }
+}